@@ -12,22 +12,19 @@
 import javax.swing.*;
 
 /**
- * This program initializes the music library and launches the MusicPlayerGUI.
+ * This program launches the MusicPlayerGUI, which loads the music library.
  *
  * @version 28 November 2024
  */
 public class App {
 
     /**
-     * The entry point of the program. Initializes the music library and launches
-     * the graphical user interface for the music player.
+     * The entry point of the program. Launches the graphical user interface for the
+     * music player; the music library is loaded by the GUI in the background.
      *
      * @param theArgs the command-line arguments (not used).
      */
     public static void main(String[] theArgs) {
-        // Initialize the music library with the path to the song directory.
-        Library myLibrary = new Library("src/assets/songs");
-
         // Use SwingUtilities.invokeLater to ensure GUI updates happen on the Event Dispatch Thread (EDT).
         SwingUtilities.invokeLater(new Runnable() {
 
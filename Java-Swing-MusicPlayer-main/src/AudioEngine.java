@@ -0,0 +1,936 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        AudioEngine.java
+ */
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.BitstreamException;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+import javazoom.jl.player.AudioDevice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plays MP3 files on a single long-lived audio thread. Callers never touch the decoder or
+ * the audio device; they put commands on a queue (play, pause, resume, seek, stop) and the
+ * audio thread applies them between two frames, so no command ever needs a thread of its
+ * own and rapid clicks cannot race each other. A seek followed by another seek, a play or
+ * a stop before the audio thread gets to it is skipped, and so is a play followed by
+ * another play or a stop.
+ *
+ * A song that fails to open or decode, including JLayer's runtime exceptions on corrupt
+ * frames and the InternalError of a mapped file truncated while it plays, is closed and
+ * reported as ended; the audio thread carries on with the next command.
+ *
+ * The audio thread decodes one MPEG frame at a time with JLayer's Bitstream and Decoder
+ * and writes it to the audio device. A song's file is mapped into memory when it is
+ * opened (see MappedAudioFile), so the Bitstream reads it without system calls and every
+ * seek starts a new stream on the same mapping. Its state is kept in an AtomicReference that only the
+ * audio thread changes; pause and seek move it with compare-and-set, so they only take
+ * effect in the state they are meant for, and other threads always see a state the audio
+ * thread actually reached.
+ *
+ * A song can be queued to follow the current one. During the last seconds of the current
+ * song the audio thread opens the queued song and decodes its first frames into a PCM
+ * ring buffer of capped size; when the current song runs out, the buffered samples go to
+ * the same audio device right after its last frame, so the songs play without a gap.
+ *
+ * Pausing stops the audio line but keeps the stream, the decoder and the samples the line
+ * has buffered, so resuming continues with the next sample and costs no decoding.
+ *
+ * The default device, LineAudioDevice, passes the decoded samples through a lock-free
+ * ring buffer to an output thread of its own, so a stall of the audio thread does not
+ * reach the line. The buffer sizes are chosen with the device factory; the underruns of
+ * every device are added up here.
+ *
+ * The latency of every command, from the call that queued it to the moment it took effect
+ * (the first frame handed to the audio device for play and seek, the line stopped or
+ * started for pause and resume, the device closed for stop), is measured; the last and
+ * the highest are available from the engine.
+ *
+ * @version 28 November 2024
+ */
+public class AudioEngine implements AutoCloseable {
+
+    /**
+     * The playback states.
+     */
+    public enum State {
+        /** Nothing is loaded. */
+        IDLE,
+        /** Frames are being decoded and played. */
+        PLAYING,
+        /** A song is loaded and positioned but not played. */
+        PAUSED,
+        /** The position is being moved to another frame. */
+        SEEKING,
+        /** The last frame of the song has been played. */
+        ENDED
+    }
+
+    /**
+     * Receives playback events on the audio thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the first frame of a play command has been written.
+         *
+         * @param theTicket the ticket returned by {@link #play(Song, int)}.
+         */
+        void playbackStarted(int theTicket);
+
+        /**
+         * Called after the last frame of a song has been played.
+         *
+         * @param theTicket the ticket returned by {@link #play(Song, int)}.
+         */
+        void playbackEnded(int theTicket);
+
+        /**
+         * Called when the queued song has taken over from a song that ended, once its first
+         * frame is heard.
+         *
+         * @param theEndedTicket the ticket of the song that ended.
+         * @param theTicket the ticket returned by {@link #setNext(Song)} for the queued song.
+         */
+        void playbackAdvanced(int theEndedTicket, int theTicket);
+    }
+
+    /**
+     * Creates the audio device a song is played on.
+     */
+    public interface DeviceFactory {
+
+        /**
+         * Creates a new, unopened audio device.
+         *
+         * @return the device.
+         * @throws JavaLayerException if no device is available.
+         */
+        AudioDevice create() throws JavaLayerException;
+    }
+
+    /**
+     * How long before the end of a song the queued song starts being decoded, by default.
+     */
+    public static final int DEFAULT_LOOKAHEAD_MILLIS = 5000;
+
+    /**
+     * The memory the decoded start of the queued song may take, by default; 1 MiB holds
+     * about 6 seconds of 44.1 kHz stereo.
+     */
+    public static final int DEFAULT_LOOKAHEAD_BYTES = 1 << 20;
+
+    /**
+     * The most samples an MPEG audio frame decodes to: 1152 per channel.
+     */
+    private static final int MAX_FRAME_SAMPLES = 2 * 1152;
+
+    private enum CommandType { PLAY, PAUSE, RESUME, SEEK, STOP, SET_NEXT, SHUTDOWN }
+
+    /**
+     * A queued request, stamped with the time it was made.
+     */
+    private static final class Command {
+        private final CommandType myType;
+        private final Song mySong;
+        private final int myFrame;
+        private final int myTicket;
+        private final long myQueuedAt = System.nanoTime();
+
+        private Command(CommandType theType, Song theSong, int theFrame, int theTicket) {
+            myType = theType;
+            mySong = theSong;
+            myFrame = theFrame;
+            myTicket = theTicket;
+        }
+
+        /**
+         * Checks whether the command, queued right after another, makes that one pointless:
+         * a seek is replaced by a later seek, play or stop, and a play by a later play or
+         * stop. A seek right after a play moves the new song, so the play must happen.
+         */
+        private boolean supersedes(Command theEarlier) {
+            switch (theEarlier.myType) {
+                case SEEK:
+                    return myType == CommandType.SEEK || myType == CommandType.PLAY || myType == CommandType.STOP;
+                case PLAY:
+                    return myType == CommandType.PLAY || myType == CommandType.STOP;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private final DeviceFactory myDeviceFactory;
+    private final Listener myListener;
+    private final int myLookaheadMillis;
+
+    private final BlockingQueue<Command> myCommands = new LinkedBlockingQueue<>();
+    private final AtomicReference<State> myState = new AtomicReference<>(State.IDLE);
+    private final Thread myThread;
+
+    /**
+     * Numbers the play commands, so events of an older song can be told apart.
+     */
+    private int myNextTicket;
+
+    // The fields below are only used by the audio thread.
+
+    /**
+     * The song that is open, its ticket, its mapped file, and the stream and decoder
+     * reading it.
+     */
+    private Song mySong;
+    private int myTicket;
+    private MappedAudioFile myFile;
+    private Bitstream myBitstream;
+    private Decoder myDecoder;
+
+    /**
+     * The output frequency, channel count and frame length of the open song, known once
+     * a frame has been decoded.
+     */
+    private int myFrequency;
+    private int myChannels;
+    private float myMsPerFrame;
+
+    /**
+     * The open audio device, null while paused or stopped.
+     */
+    private AudioDevice myDevice;
+
+    /**
+     * The song queued to follow the open one and its ticket, and once the lookahead has
+     * started, its mapped file, the stream and decoder reading it, the number of its
+     * frames decoded, and its output format.
+     */
+    private Song myQueuedSong;
+    private int myQueuedTicket;
+    private MappedAudioFile myNextFile;
+    private Bitstream myNextBitstream;
+    private Decoder myNextDecoder;
+    private int myNextFrame;
+    private int myNextFrequency;
+    private int myNextChannels;
+    private boolean isNextExhausted;
+
+    /**
+     * The decoded start of the queued song; after a handover, the start of the open song
+     * that still has to be written to the device.
+     */
+    private final PcmRingBuffer myLookahead;
+    private final short[] myDrainBuffer = new short[MAX_FRAME_SAMPLES];
+
+    /**
+     * After a handover: the ticket of the song still heard from the device buffer, and the
+     * number of its frames, until the device has played past it.
+     */
+    private int myAdvancedFromTicket;
+    private int myPreviousEndFrame;
+
+    /**
+     * The command waiting for its first frame to be decoded, for the latency measurement.
+     */
+    private Command myPendingCommand;
+
+    /**
+     * Whether the started event of the current ticket has been sent.
+     */
+    private boolean wasStartReported;
+
+    /**
+     * The number of frames of the open song decoded or skipped so far.
+     */
+    private volatile int myFrame;
+
+    /**
+     * The frame the audio device started at.
+     */
+    private int myDeviceStartFrame;
+
+    /**
+     * The frame being heard, derived from the audio device's position; the device buffers
+     * decoded frames, so this lags behind myFrame while playing.
+     */
+    private volatile int myPlayedFrame;
+
+    /**
+     * The underruns of every closed audio device, as counted by LineAudioDevice.
+     */
+    private volatile int myRingUnderruns;
+    private volatile int myLineUnderruns;
+
+    /**
+     * The latency of the last command that took effect, and the highest so far, in
+     * nanoseconds.
+     */
+    private volatile long myLastLatency;
+    private volatile long myMaxLatency;
+
+    /**
+     * Constructs an engine that plays on the system's default audio line and starts its
+     * audio thread.
+     *
+     * @param theListener receives playback events.
+     */
+    public AudioEngine(Listener theListener) {
+        this(LineAudioDevice::new, theListener,
+                DEFAULT_LOOKAHEAD_MILLIS, DEFAULT_LOOKAHEAD_BYTES);
+    }
+
+    /**
+     * Constructs an engine and starts its audio thread.
+     *
+     * @param theDeviceFactory creates the audio devices songs are played on.
+     * @param theListener receives playback events.
+     * @param theLookaheadMillis how long before the end of a song the queued song starts
+     *        being decoded.
+     * @param theLookaheadBytes the memory the decoded start of the queued song may take.
+     */
+    public AudioEngine(DeviceFactory theDeviceFactory, Listener theListener,
+                       int theLookaheadMillis, int theLookaheadBytes) {
+        myDeviceFactory = theDeviceFactory;
+        myListener = theListener;
+        myLookaheadMillis = theLookaheadMillis;
+        myLookahead = new PcmRingBuffer(Math.max(theLookaheadBytes / 2, MAX_FRAME_SAMPLES));
+        myThread = new Thread(this::run, "audio");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
+
+    /**
+     * Starts playing a song from the given frame, replacing whatever was playing.
+     *
+     * @param theSong the song to play.
+     * @param theFrame the frame to start at, 0 for the beginning.
+     * @return a ticket identifying this playback in listener events.
+     */
+    public synchronized int play(Song theSong, int theFrame) {
+        int myNewTicket = ++myNextTicket;
+        myCommands.add(new Command(CommandType.PLAY, theSong, theFrame, myNewTicket));
+        return myNewTicket;
+    }
+
+    /**
+     * Queues a song to follow the current one without a gap, replacing any song queued
+     * before. A later play or stop drops it.
+     *
+     * @param theSong the song to play next, or null to queue nothing.
+     * @return a ticket identifying the queued song in listener events, 0 for null.
+     */
+    public synchronized int setNext(Song theSong) {
+        int myNewTicket = theSong == null ? 0 : ++myNextTicket;
+        myCommands.add(new Command(CommandType.SET_NEXT, theSong, 0, myNewTicket));
+        return myNewTicket;
+    }
+
+    /**
+     * Returns how often the output thread of a closed audio device found its ring buffer
+     * empty while playing, i.e. decoding fell behind.
+     *
+     * @return the number of ring buffer underruns so far.
+     */
+    public int getRingUnderruns() {
+        return myRingUnderruns;
+    }
+
+    /**
+     * Returns how often a closed audio device ran out of samples while playing, which is
+     * heard as a dropout.
+     *
+     * @return the number of line underruns so far.
+     */
+    public int getLineUnderruns() {
+        return myLineUnderruns;
+    }
+
+    /**
+     * Returns how long the last command took from the call that queued it until it took
+     * effect.
+     *
+     * @return the latency in milliseconds, 0 before the first command.
+     */
+    public double getLastLatencyMillis() {
+        return myLastLatency / 1e6;
+    }
+
+    /**
+     * Returns the highest latency of any command so far.
+     *
+     * @return the latency in milliseconds, 0 before the first command.
+     */
+    public double getMaxLatencyMillis() {
+        return myMaxLatency / 1e6;
+    }
+
+    /**
+     * Pauses playback, keeping the song and its position.
+     */
+    public void pause() {
+        myCommands.add(new Command(CommandType.PAUSE, null, 0, 0));
+    }
+
+    /**
+     * Resumes a paused song where it was paused.
+     */
+    public void resume() {
+        myCommands.add(new Command(CommandType.RESUME, null, 0, 0));
+    }
+
+    /**
+     * Moves the position of the loaded song, keeping it playing or paused.
+     *
+     * @param theFrame the frame to continue at.
+     */
+    public void seek(int theFrame) {
+        myCommands.add(new Command(CommandType.SEEK, null, theFrame, 0));
+    }
+
+    /**
+     * Stops playback and closes the song.
+     */
+    public void stop() {
+        myCommands.add(new Command(CommandType.STOP, null, 0, 0));
+    }
+
+    /**
+     * Returns the current state.
+     *
+     * @return the state.
+     */
+    public State getState() {
+        return myState.get();
+    }
+
+    /**
+     * Returns the frame of the current song being heard. While playing it follows the
+     * audio device's position, so it does not run ahead by the frames the device buffers,
+     * and it is updated once per decoded frame.
+     *
+     * @return the frame position.
+     */
+    public int getFrame() {
+        return myPlayedFrame;
+    }
+
+    /**
+     * Stops playback and ends the audio thread.
+     */
+    @Override
+    public void close() {
+        myCommands.add(new Command(CommandType.SHUTDOWN, null, 0, 0));
+    }
+
+    /**
+     * Changes the state if it still is the expected one.
+     */
+    private boolean transition(State theExpected, State theNew) {
+        return myState.compareAndSet(theExpected, theNew);
+    }
+
+    /**
+     * The audio thread: applies every queued command, then decodes the next frame while
+     * playing, or waits for the next command otherwise.
+     */
+    private void run() {
+        try {
+            while (true) {
+                Command myCommand = null;
+                try {
+                    myCommand = myState.get() == State.PLAYING ? myCommands.poll() : myCommands.take();
+                    if (myCommand != null && myCommand.myType == CommandType.SHUTDOWN) {
+                        closeSong();
+                        return;
+                    }
+                    if (myCommand == null) {
+                        playFrame();
+                        if (shouldDecodeAhead()) {
+                            decodeAhead();
+                        }
+                    } else {
+                        apply(myCommand);
+                    }
+                } catch (RuntimeException | InternalError e) {
+                    // JLayer throws on some corrupt frames, and a mapped file truncated while
+                    // playing raises an InternalError, possibly a little after the read that
+                    // faulted; either way only the song is lost, not the thread.
+                    System.out.println("Error playing " + (mySong != null ? mySong.getFilePath() : "a song")
+                            + ": " + e);
+                    fail(mySong != null ? myTicket
+                            : myCommand != null && myCommand.myType == CommandType.PLAY ? myCommand.myTicket : 0);
+                }
+            }
+        } catch (InterruptedException e) {
+            closeSong();
+        }
+    }
+
+    private void apply(Command theCommand) {
+        // A later command that replaces this one's effect anyway makes the work pointless.
+        Command myNext = myCommands.peek();
+        if (myNext != null && myNext.supersedes(theCommand)) {
+            return;
+        }
+
+        switch (theCommand.myType) {
+            case PLAY:
+                closeSong();
+                wasStartReported = false;
+                if (!openSong(theCommand.mySong, theCommand.myTicket)) {
+                    fail(theCommand.myTicket);
+                } else if (moveTo(theCommand.myFrame)) {
+                    startPlaying(theCommand);
+                }
+                break;
+            case PAUSE:
+                if (transition(State.PLAYING, State.PAUSED)) {
+                    if (myDevice instanceof LineAudioDevice) {
+                        // Stop the line where it is; the stream, the decoder and the samples the
+                        // line buffered are all kept, and the audio thread waits without work.
+                        ((LineAudioDevice) myDevice).pause();
+                        updatePlayedFrame();
+                    } else {
+                        // Other devices cannot pause, so playback resumes after what they buffered.
+                        closeDevice();
+                        myPlayedFrame = myFrame;
+                    }
+                    report(theCommand);
+                }
+                break;
+            case RESUME:
+                if (myState.get() == State.PAUSED && myDevice instanceof LineAudioDevice) {
+                    ((LineAudioDevice) myDevice).resume();
+                    myState.set(State.PLAYING);
+                    report(theCommand);
+                } else if (myState.get() == State.PAUSED) {
+                    startPlaying(theCommand);
+                }
+                break;
+            case SEEK:
+                seek(theCommand);
+                break;
+            case STOP:
+                closeSong();
+                report(theCommand);
+                break;
+            case SET_NEXT:
+                closeNext();
+                myQueuedSong = theCommand.mySong;
+                myQueuedTicket = theCommand.myTicket;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Moves the open song to another frame, keeping it playing or paused.
+     */
+    private void seek(Command theCommand) {
+        State myPrevious = myState.get();
+        if (mySong == null || myPrevious == State.IDLE || !transition(myPrevious, State.SEEKING)) {
+            return;
+        }
+        closeDevice();
+        // The position changes, so nothing buffered is played; the start of the queued song
+        // is decoded again near the end.
+        closeNext();
+        myLookahead.clear();
+
+        if (!moveTo(theCommand.myFrame)) {
+            return;
+        }
+
+        if (myPrevious == State.PLAYING) {
+            startPlaying(theCommand);
+        } else {
+            transition(State.SEEKING, State.PAUSED);
+            report(theCommand);
+        }
+    }
+
+    /**
+     * Opens a song's file and decoder; the song is PAUSED at frame 0 afterwards.
+     */
+    private boolean openSong(Song theSong, int theTicket) {
+        try {
+            myFile = MappedAudioFile.open(new File(theSong.getFilePath()));
+        } catch (IOException e) {
+            System.out.println("Error opening " + theSong.getFilePath() + ": " + e.getMessage());
+            return false;
+        }
+        mySong = theSong;
+        myTicket = theTicket;
+        openStream(0, 0);
+        myPlayedFrame = 0;
+        myState.set(State.PAUSED);
+        return true;
+    }
+
+    /**
+     * Reads the open song again from the given byte offset, which must be the start of
+     * the given frame, with a new decoder. The file stays mapped, so this touches no file.
+     */
+    private void openStream(long theOffset, int theFrame) {
+        closeBitstream();
+        myBitstream = new Bitstream(myFile.openStream(theOffset));
+        myDecoder = new Decoder();
+        myFrame = theFrame;
+    }
+
+    /**
+     * Positions the open song at the given frame. With a seek index the file is read from
+     * the nearest indexed frame before it, so at most one interval of frames is skipped
+     * wherever the frame is; without one, the frames are skipped from the current frame,
+     * or from the start of the file when moving back.
+     */
+    private boolean moveTo(int theFrame) {
+        SeekIndex myIndex = mySong.getSeekIndex();
+        if (myIndex != null && (theFrame < myFrame || myIndex.entryFrameFor(theFrame) > myFrame)) {
+            openStream(myIndex.offsetFor(theFrame), myIndex.entryFrameFor(theFrame));
+        } else if (theFrame < myFrame) {
+            openStream(0, 0);
+        }
+        return skipTo(theFrame);
+    }
+
+    /**
+     * Skips frames without decoding them until the position is the given frame.
+     */
+    private boolean skipTo(int theFrame) {
+        try {
+            while (myFrame < theFrame) {
+                if (myBitstream.readFrame() == null) {
+                    end();
+                    return false;
+                }
+                myBitstream.closeFrame();
+                myFrame++;
+            }
+            myPlayedFrame = myFrame;
+            return true;
+        } catch (BitstreamException e) {
+            System.out.println("Error reading " + mySong.getFilePath() + ": " + e.getMessage());
+            fail(myTicket);
+            return false;
+        }
+    }
+
+    /**
+     * Opens the audio device and switches to PLAYING; the command's latency is measured
+     * once its first frame has been decoded.
+     */
+    private void startPlaying(Command theCommand) {
+        try {
+            myDevice = myDeviceFactory.create();
+            myDevice.open(myDecoder);
+        } catch (JavaLayerException e) {
+            System.out.println("Error opening the audio device: " + e.getMessage());
+            myDevice = null;
+            // The song cannot be heard, so it is over; a seek or resume carries no ticket.
+            fail(theCommand.myTicket != 0 ? theCommand.myTicket : myTicket);
+            return;
+        }
+        myDeviceStartFrame = myFrame;
+        myState.set(State.PLAYING);
+        myPendingCommand = theCommand;
+    }
+
+    /**
+     * Decodes the next frame and writes it to the audio device. After a handover, the
+     * samples decoded ahead are written first.
+     */
+    private void playFrame() {
+        try {
+            if (myNextFrame == 0 && myLookahead.available() > 0) {
+                int myCount = myLookahead.read(myDrainBuffer, 0, myDrainBuffer.length);
+                myDevice.write(myDrainBuffer, 0, myCount);
+            } else {
+                Header myHeader = myBitstream.readFrame();
+                if (myHeader == null) {
+                    if (!handOver()) {
+                        end();
+                    }
+                    return;
+                }
+                SampleBuffer myOutput = (SampleBuffer) myDecoder.decodeFrame(myHeader, myBitstream);
+                if (myPendingCommand != null) {
+                    report(myPendingCommand);
+                    myPendingCommand = null;
+                }
+                myDevice.write(myOutput.getBuffer(), 0, myOutput.getBufferLength());
+                myBitstream.closeFrame();
+                myFrame++;
+                myFrequency = myDecoder.getOutputFrequency();
+                myChannels = myDecoder.getOutputChannels();
+                myMsPerFrame = myHeader.ms_per_frame();
+            }
+            updatePlayedFrame();
+        } catch (JavaLayerException e) {
+            System.out.println("Error playing " + mySong.getFilePath() + ": " + e.getMessage());
+            fail(myTicket);
+            return;
+        }
+
+        if (!wasStartReported) {
+            wasStartReported = true;
+            myListener.playbackStarted(myTicket);
+        }
+    }
+
+    /**
+     * Updates the frame being heard from the device position.
+     */
+    private void updatePlayedFrame() {
+        // The device reports how long it has been playing; whatever was decoded beyond that
+        // is still in its buffer. Right after a handover that can still be the end of the
+        // previous song.
+        int myHeard = myDeviceStartFrame + (int) (myDevice.getPosition() / myMsPerFrame);
+        if (myAdvancedFromTicket != 0 && myHeard < 0) {
+            myPlayedFrame = myPreviousEndFrame + myHeard;
+            return;
+        }
+        reportAdvance();
+        myPlayedFrame = Math.min(myHeard, myFrame);
+    }
+
+    /**
+     * Checks whether the queued song should be decoded ahead: the current song is playing
+     * its last seconds, the lookahead buffer has room for another frame, and it is not
+     * still holding the start of the current song.
+     */
+    private boolean shouldDecodeAhead() {
+        if (myQueuedSong == null || isNextExhausted || myState.get() != State.PLAYING
+                || (myNextFrame == 0 && myLookahead.available() > 0)
+                || myLookahead.remaining() < MAX_FRAME_SAMPLES) {
+            return false;
+        }
+        return (mySong.getFrameCount() - myFrame) * myMsPerFrame <= myLookaheadMillis;
+    }
+
+    /**
+     * Decodes one frame of the queued song into the lookahead buffer, opening the song
+     * first if needed.
+     */
+    private void decodeAhead() {
+        try {
+            if (myNextBitstream == null) {
+                myNextFile = MappedAudioFile.open(new File(myQueuedSong.getFilePath()));
+                myNextBitstream = new Bitstream(myNextFile.openStream(0));
+                myNextDecoder = new Decoder();
+            }
+            Header myHeader = myNextBitstream.readFrame();
+            if (myHeader == null) {
+                isNextExhausted = true;
+                return;
+            }
+            SampleBuffer myOutput = (SampleBuffer) myNextDecoder.decodeFrame(myHeader, myNextBitstream);
+            myLookahead.write(myOutput.getBuffer(), 0, myOutput.getBufferLength());
+            myNextBitstream.closeFrame();
+            myNextFrame++;
+            myNextFrequency = myNextDecoder.getOutputFrequency();
+            myNextChannels = myNextDecoder.getOutputChannels();
+        } catch (IOException | JavaLayerException | RuntimeException | InternalError e) {
+            // Only the queued song is dropped; the current one plays to its end.
+            System.out.println("Error opening " + myQueuedSong.getFilePath() + ": " + e.getMessage());
+            closeNext();
+            myQueuedSong = null;
+        }
+    }
+
+    /**
+     * Makes the queued song the open one once the current song has run out of frames.
+     * If both have the same output format the audio device is kept, so the first sample
+     * of the queued song follows the last sample of the current one.
+     *
+     * @return false if no song is queued or it could not be opened.
+     */
+    private boolean handOver() {
+        if (myQueuedSong != null && myNextFrame == 0) {
+            // The current song was too short, or moved too close to its end, to decode ahead.
+            decodeAhead();
+        }
+        if (myQueuedSong == null || myNextFrame == 0) {
+            closeNext();
+            return false;
+        }
+
+        int myEndedTicket = myTicket;
+        int myEndedFrame = myFrame;
+        int myFramesOnDevice = myFrame - myDeviceStartFrame;
+        boolean isSameFormat = myNextFrequency == myFrequency && myNextChannels == myChannels;
+
+        closeBitstream();
+        mySong = myQueuedSong;
+        myTicket = myQueuedTicket;
+        myFile = myNextFile;
+        myBitstream = myNextBitstream;
+        myDecoder = myNextDecoder;
+        myFrame = myNextFrame;
+        myFrequency = myNextFrequency;
+        myChannels = myNextChannels;
+        myNextFile = null;
+        myNextBitstream = null;
+        myNextDecoder = null;
+        myNextFrame = 0;
+        isNextExhausted = false;
+        myQueuedSong = null;
+
+        myAdvancedFromTicket = myEndedTicket;
+        myPreviousEndFrame = myEndedFrame;
+        if (isSameFormat) {
+            // The device position keeps counting from where the ended song started.
+            myDeviceStartFrame = -myFramesOnDevice;
+        } else {
+            // A device plays one format only, so this handover has a gap.
+            myDevice.flush();
+            closeDevice();
+            try {
+                myDevice = myDeviceFactory.create();
+                myDevice.open(myDecoder);
+            } catch (JavaLayerException e) {
+                System.out.println("Error opening the audio device: " + e.getMessage());
+                myDevice = null;
+                // Closing the old device reported the handover, so the queued song now ends.
+                fail(myTicket);
+                return true;
+            }
+            myDeviceStartFrame = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Tells the listener about a handover once the queued song is heard, or once the
+     * device that still held the ended song is closed.
+     */
+    private void reportAdvance() {
+        if (myAdvancedFromTicket != 0) {
+            int myEndedTicket = myAdvancedFromTicket;
+            myAdvancedFromTicket = 0;
+            myListener.playbackAdvanced(myEndedTicket, myTicket);
+        }
+    }
+
+    /**
+     * Lets the device play out what it has buffered and reports the end of the song.
+     */
+    private void end() {
+        if (myDevice != null) {
+            myDevice.flush();
+        }
+        int myEndedTicket = myTicket;
+        closeSong();
+        myState.set(State.ENDED);
+        myListener.playbackEnded(myEndedTicket);
+    }
+
+    /**
+     * Gives up on a song that cannot be played: closes it and reports its end, so a
+     * playlist moves on instead of waiting for a song that will never finish.
+     *
+     * @param theTicket the ticket of the song, 0 if no song was affected.
+     */
+    private void fail(int theTicket) {
+        try {
+            closeSong();
+        } catch (RuntimeException e) {
+            System.out.println("Error closing a song: " + e);
+        }
+        if (theTicket != 0) {
+            myState.set(State.ENDED);
+            myListener.playbackEnded(theTicket);
+        }
+    }
+
+    private void report(Command theCommand) {
+        // Only the audio thread writes the latencies.
+        myLastLatency = System.nanoTime() - theCommand.myQueuedAt;
+        if (myLastLatency > myMaxLatency) {
+            myMaxLatency = myLastLatency;
+        }
+    }
+
+    private void closeDevice() {
+        if (myDevice != null) {
+            myDevice.close();
+            if (myDevice instanceof LineAudioDevice) {
+                LineAudioDevice myLineDevice = (LineAudioDevice) myDevice;
+                if (myLineDevice.getRingUnderruns() > 0) {
+                    System.out.printf("Audio output starved %d times, %d of them audibly%n",
+                            myLineDevice.getRingUnderruns(), myLineDevice.getLineUnderruns());
+                }
+                myRingUnderruns += myLineDevice.getRingUnderruns();
+                myLineUnderruns += myLineDevice.getLineUnderruns();
+            }
+            myDevice = null;
+        }
+        reportAdvance();
+    }
+
+    /**
+     * Closes the queued song's stream and drops what was decoded of it; the song stays
+     * queued. Samples of the open song left in the lookahead buffer after a handover are
+     * kept.
+     */
+    private void closeNext() {
+        if (myNextBitstream != null) {
+            try {
+                myNextBitstream.close();
+            } catch (BitstreamException e) {
+                System.out.println("Error closing " + myQueuedSong.getFilePath() + ": " + e.getMessage());
+            }
+            myNextBitstream = null;
+        }
+        if (myNextFrame > 0) {
+            myLookahead.clear();
+        }
+        myNextFile = null;
+        myNextDecoder = null;
+        myNextFrame = 0;
+        isNextExhausted = false;
+    }
+
+    private void closeBitstream() {
+        if (myBitstream != null) {
+            try {
+                myBitstream.close();
+            } catch (BitstreamException e) {
+                System.out.println("Error closing " + mySong.getFilePath() + ": " + e.getMessage());
+            }
+            myBitstream = null;
+        }
+    }
+
+    private void closeStream() {
+        closeBitstream();
+        myFile = null;
+        myDecoder = null;
+        mySong = null;
+        myState.set(State.IDLE);
+    }
+
+    private void closeSong() {
+        closeDevice();
+        closeNext();
+        myQueuedSong = null;
+        myLookahead.clear();
+        closeStream();
+        myPendingCommand = null;
+    }
+}
@@ -11,22 +11,101 @@
 
 import javax.swing.*;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Manages the collections of the songs. Provides functionality to load songs from a folder,
- * access songs by index or title, add songs to the library, and convert the library into a
- * format suitable for JTable.
+ * access songs by index or title, add songs to the library, and search and sort it. The
+ * song lists are shown in the JTable directly through a SongTableModel.
  *
  * @version 28 November 2024
  */
 public class Library {
+    /**
+     * Builds seek indexes one song at a time, in the order the songs are first played.
+     */
+    private static final ExecutorService SEEK_INDEXER = Executors.newSingleThreadExecutor(theTask -> {
+        Thread myThread = new Thread(theTask, "seek-index");
+        myThread.setDaemon(true);
+        return myThread;
+    });
+
+    /**
+     * How often a search starts over to let a change to the library go first.
+     */
+    private static final int SEARCH_RESTARTS = 4;
+
     /**
      * Stores the songs in the library.
      */
     public ArrayList<Song> mySongLibrary, updatedSongLibrary;
 
+    /**
+     * The scanner used to load the songs, null for playlists.
+     */
+    private LibraryScanner myScanner;
+
+    /**
+     * The metadata cache of the library folder, null for playlists.
+     */
+    private MetadataCache myCache;
+
+    /**
+     * The library folder, null for playlists.
+     */
+    private File myFolder;
+
+    /**
+     * Listeners notified of incremental changes to the library.
+     */
+    private final List<LibraryListener> myListeners = new ArrayList<>();
+
+    /**
+     * Column-oriented copy of the songs used for sorting, filtering and grouping.
+     */
+    private final LibraryStore myStore = new LibraryStore();
+
+    /**
+     * The number of threads waiting for the store's lock to change the library. A
+     * background search gives the lock up as soon as one is waiting, so the Event
+     * Dispatch Thread does not wait for a whole search.
+     */
+    private final AtomicInteger myWaitingWriters = new AtomicInteger();
+
+    /**
+     * Whether the search holding the store's lock may still give it up; guarded by the
+     * lock.
+     */
+    private boolean mySearchMayYield;
+
+    /**
+     * Trigram index over the store used by {@link #searchOrder(String)}.
+     */
+    private final SearchIndex mySearchIndex = new SearchIndex(myStore,
+            () -> mySearchMayYield && myWaitingWriters.get() > 0);
+
+    /**
+     * Counts changes to the songs of the library, so search results computed in the
+     * background can be recognized as outdated.
+     */
+    private int myModCount;
+
+    /**
+     * The matches behind updatedSongLibrary while it holds search results that are
+     * retrieved a page at a time, null otherwise.
+     */
+    private RankedResults mySearchResults;
+
+    /**
+     * How many of the ranked matches have been retrieved into updatedSongLibrary.
+     */
+    private int myRetrievedCount;
+
     /**
      * Constructs a Library object by loading songs from the specified folder.
      *
@@ -34,139 +113,380 @@ public class Library {
      */
     public Library(String theFolderPath) {
         // Initialize the song library by adding songs from the specified folder.
-        mySongLibrary = addLibraryElements(theFolderPath);
+        this(theFolderPath, new LibraryScanner());
+    }
+
+    /**
+     * Constructs an empty Library and loads a playlist into it on a background thread. The
+     * first song is appended on its own as soon as it is read, the rest in batches, each on
+     * the Event Dispatch Thread and reported to the listeners with songsAdded.
+     *
+     * @param thePlaylistFile the playlist file.
+     * @param theBatchSize the number of songs appended at a time after the first one.
+     * @param theOnLoaded run on the Event Dispatch Thread after the last batch, or null.
+     */
+    public Library(File thePlaylistFile, int theBatchSize, Runnable theOnLoaded) {
+        mySongLibrary = new ArrayList<>();
         updatedSongLibrary = mySongLibrary;
 
+        Thread myThread = new Thread(() -> {
+            try {
+                PlaylistFile myPlaylist = PlaylistFile.read(thePlaylistFile, theBatchSize,
+                        theBatch -> SwingUtilities.invokeLater(() -> addSongs(theBatch)));
+                verify(myPlaylist);
+            } catch (IOException e) {
+                System.out.println("Error loading playlist " + thePlaylistFile + ": " + e.getMessage());
+            }
+            if (theOnLoaded != null) {
+                SwingUtilities.invokeLater(theOnLoaded);
+            }
+        }, "playlist-loader");
+        myThread.setDaemon(true);
+        myThread.start();
     }
 
-    public Library(String playlistName,String playlistFilePath) {
-    mySongLibrary = addPlaylistElements(playlistFilePath);
-    updatedSongLibrary = mySongLibrary;
+    /**
+     * Checks the songs a playlist built from its saved metadata against their files, and
+     * applies changed or deleted files like the folder watcher does.
+     */
+    private void verify(PlaylistFile thePlaylist) {
+        List<Song> myChangedSongs = new ArrayList<>();
+        List<String> myRemovedPaths = new ArrayList<>();
+        thePlaylist.findChanges(myChangedSongs, myRemovedPaths);
+        if (!myChangedSongs.isEmpty() || !myRemovedPaths.isEmpty()) {
+            SwingUtilities.invokeLater(() -> applyChanges(myChangedSongs, myRemovedPaths));
+        }
     }
-    public ArrayList<Song> addPlaylistElements(String filePath){
-        Scanner playlistFile = null;
 
-        try{
-            playlistFile = new Scanner(new File(filePath));
-        } catch (FileNotFoundException e) {
-            JOptionPane.showMessageDialog(null,"Error loading playlist","Error",JOptionPane.ERROR_MESSAGE);
-        }
+    /**
+     * Constructs a Library object by loading songs from the specified folder with the given scanner.
+     *
+     * @param theFolderPath the path to the folder containing the songs.
+     * @param theScanner the scanner used to walk the folder and parse the songs.
+     */
+    public Library(String theFolderPath, LibraryScanner theScanner) {
+        myScanner = theScanner;
+        mySongLibrary = addLibraryElements(theFolderPath, theScanner);
+        updatedSongLibrary = mySongLibrary;
+        addToStore(mySongLibrary);
+    }
 
-        ArrayList<Song> newLibrary = new ArrayList<>();
+    /**
+     * Constructs an empty Library and loads the songs of the specified folder on a
+     * background thread. The songs are appended in batches on the Event Dispatch Thread as
+     * they are parsed, and listeners are told about each batch with songsAdded, so a table
+     * showing the library fills up while the rest of the folder is still being read.
+     *
+     * The folder can be watched afterwards. The watcher starts before the folder is
+     * listed, so files created, changed or deleted during a long scan are applied once
+     * the scan is done.
+     *
+     * @param theFolderPath the path to the folder containing the songs.
+     * @param theScanner the scanner used to walk the folder and parse the songs.
+     * @param theBatchSize the number of songs appended at a time.
+     * @param theWatchDebounceMillis how long the folder must be quiet before a batch of
+     *                               changes is applied, or a negative value not to watch.
+     * @param theOnLoaded run on the Event Dispatch Thread after the last batch, or null.
+     */
+    public Library(String theFolderPath, LibraryScanner theScanner, int theBatchSize,
+                   long theWatchDebounceMillis, Runnable theOnLoaded) {
+        myScanner = theScanner;
+        myFolder = new File(theFolderPath);
+        mySongLibrary = new ArrayList<>();
+        updatedSongLibrary = mySongLibrary;
 
-        while(playlistFile.hasNextLine()) {
-            Song song = new Song(playlistFile.nextLine());
-            newLibrary.add(song);
-        }
+        Thread myThread = new Thread(() -> {
+            if (!myFolder.isDirectory()) {
+                System.out.println("Error reading directory.");
+            } else {
+                MetadataCache myLoadedCache = MetadataCache.load(MetadataCache.cacheFileFor(myFolder));
+                LibraryWatcher myWatcher = theWatchDebounceMillis >= 0
+                        ? startWatching(myLoadedCache, theWatchDebounceMillis) : null;
+
+                List<File> myFiles = theScanner.listAudioFiles(myFolder);
+                System.out.println("Number of files in the directory: " + myFiles.size());
+
+                theScanner.parse(myFiles, myLoadedCache, theBatchSize,
+                        theBatch -> SwingUtilities.invokeLater(() -> addSongs(theBatch)));
+                myLoadedCache.retainAll(myFiles);
+                myLoadedCache.save();
+                SwingUtilities.invokeLater(() -> myCache = myLoadedCache);
+
+                // Every batch is queued on the Event Dispatch Thread by now, so the changes
+                // collected meanwhile are applied after them.
+                if (myWatcher != null) {
+                    myWatcher.release();
+                }
+            }
+            if (theOnLoaded != null) {
+                SwingUtilities.invokeLater(theOnLoaded);
+            }
+        }, "library-loader");
+        myThread.setDaemon(true);
+        myThread.start();
+    }
 
-       return newLibrary;
+    /**
+     * Appends songs to the library and tells the listeners. Must be called on the Event
+     * Dispatch Thread.
+     *
+     * @param theSongs the songs to append.
+     */
+    public void addSongs(List<Song> theSongs) {
+        if (theSongs.isEmpty()) {
+            return;
+        }
 
+        myWaitingWriters.incrementAndGet();
+        synchronized (myStore) {
+            myWaitingWriters.decrementAndGet();
+            myModCount++;
+            int myFirstAdded = mySongLibrary.size();
+            mySongLibrary.addAll(theSongs);
+            addToStore(theSongs);
+            for (LibraryListener myListener : myListeners) {
+                myListener.songsAdded(myFirstAdded, mySongLibrary.size() - 1);
+            }
+        }
     }
 
+    private void addToStore(List<Song> theSongs) {
+        for (Song mySong : theSongs) {
+            mySearchIndex.add(myStore.add(mySong));
+        }
+    }
 
+    /**
+     * Returns the column store of the library for library-wide sorting, filtering and
+     * grouping over primitive columns.
+     *
+     * @return the store.
+     */
+    public LibraryStore getStore() {
+        return myStore;
+    }
 
     /**
      * Adds songs from the specified folder to the library.
      *
      * @param theFolderPath the path to the folder containing the songs.
+     * @param theScanner the scanner used to walk the folder and parse the songs.
      * @return an ArrayList containing Song objects loaded from the folder.
      */
-    private ArrayList<Song> addLibraryElements(String theFolderPath) {
+    private ArrayList<Song> addLibraryElements(String theFolderPath, LibraryScanner theScanner) {
         File myDirectory = new File(theFolderPath);
-        ArrayList<Song> myResult = new ArrayList<>();
+        myFolder = myDirectory;
 
         // Check if the directory exists and is a directory.
-        if (myDirectory.exists() && myDirectory.isDirectory()) {
-            File[] myFiles = myDirectory.listFiles();
-            int myFileCount;
-
-            if (myFiles != null) {
-                myFileCount = myFiles.length;
-                System.out.println("Number of files in the directory: " + myFileCount);
-
-                // Iterate through the files in the directory.
-                for (File myFile : myFiles) {
-                    // Create a Song object for each file and add it to the result list.
-                    Song mySong = new Song(myFile.getPath());
-                    myResult.add(mySong);
-                }
-            } else {
-                myFileCount = 0;
-                System.out.println("Error reading directory.");
-            }
+        if (!myDirectory.isDirectory()) {
+            System.out.println("Error reading directory.");
+            return new ArrayList<>();
         }
+
+        // Walk the folder recursively and parse the songs in parallel.
+        List<File> myFiles = theScanner.listAudioFiles(myDirectory);
+        System.out.println("Number of files in the directory: " + myFiles.size());
+
+        // Reuse the metadata of unchanged files and only parse new or modified ones.
+        myCache = MetadataCache.load(MetadataCache.cacheFileFor(myDirectory));
+        ArrayList<Song> myResult = theScanner.parse(myFiles, myCache);
+        myCache.retainAll(myFiles);
+        myCache.save();
         return myResult;
     }
 
 
     /**
-     * Retrieves a song from the library by its index.
-     *
-     * @param theIndex the index of the song in the library.
-     * @return the Song object at the specified index.
+     * Computes the length of every song whose length is not known yet on a background
+     * thread, and saves the results to the metadata cache so the next start has them.
+     * Songs compute their length on demand anyway, so calling this is optional.
      */
-    public Song getSong(int theIndex) {
-        return mySongLibrary.get(theIndex);
+    public void precomputeDurations() {
+        if (myScanner == null) {
+            return;
+        }
+
+        ArrayList<Song> mySongs = new ArrayList<>(mySongLibrary);
+        Thread myThread = new Thread(() -> {
+            myScanner.loadTimings(mySongs, myCache);
+            if (myCache != null) {
+                myCache.save();
+            }
+
+            // Copy the new lengths into the store's columns on the thread that owns it.
+            SwingUtilities.invokeLater(() -> {
+                for (int myRow = 0; myRow < myStore.size(); myRow++) {
+                    myStore.refreshTiming(myRow);
+                }
+            });
+        }, "duration-precompute");
+        myThread.setDaemon(true);
+        myThread.start();
     }
 
     /**
-     * Retrieves a song from the library by its title.
+     * Builds the seek index of a song on a background thread and saves it to the metadata
+     * cache, so seeking in the song jumps close to the frame from now on, also after a
+     * restart. Does nothing if the song already has an index. Must be called on the Event
+     * Dispatch Thread.
      *
-     * @param theSongTitle the title of the song to retrieve.
-     * @return the Song object with the specified title, or null if not found.
+     * @param theSong the song about to be played.
      */
-    public Song getSong(String theSongTitle) {
-        Song myResult = null;
+    public void indexForSeeking(Song theSong) {
+        if (theSong.getSeekIndex() != null) {
+            return;
+        }
 
-        // Iterate through the songs and find the one with the matching title.
-        for (Song mySong : mySongLibrary) {
-            if (mySong.getSongTitle().equals(theSongTitle)) {
-                return mySong;
+        MetadataCache myIndexCache = myCache;
+        SEEK_INDEXER.execute(() -> {
+            if (theSong.loadSeekIndex() != null && myIndexCache != null) {
+                myIndexCache.put(new File(theSong.getFilePath()), theSong);
+                myIndexCache.save();
             }
+        });
+    }
+
+    /**
+     * Starts watching the library folder. The changes are only collected until the
+     * watcher is released, once the songs of the folder have been loaded.
+     *
+     * @param theCache the metadata cache of the folder.
+     * @param theDebounceMillis how long the folder must be quiet before a batch of changes is applied.
+     * @return the running watcher, or null if the folder cannot be watched.
+     */
+    private LibraryWatcher startWatching(MetadataCache theCache, long theDebounceMillis) {
+        try {
+            LibraryWatcher myWatcher = new LibraryWatcher(this, myFolder, myScanner, theCache, theDebounceMillis);
+            myWatcher.hold();
+            myWatcher.start();
+            return myWatcher;
+        } catch (IOException e) {
+            System.out.println("Error watching " + myFolder + ": " + e.getMessage());
+            return null;
         }
-        return myResult;
     }
 
     /**
-     * Adds a song to the library.
+     * Registers a listener for incremental library changes.
      *
-     * @param theSong the Song object to add to the library.
+     * @param theListener the listener to add.
      */
-    public void addToLibrary(Song theSong) {
-        mySongLibrary.add(theSong);
+    public void addLibraryListener(LibraryListener theListener) {
+        myListeners.add(theListener);
     }
 
     /**
-     * Converts the song library to a 2D String array for use in a JTable.
+     * Applies a batch of file changes to the library. Songs whose file is already in the
+     * library replace the old song in place; other songs are appended. Must be called on
+     * the Event Dispatch Thread.
      *
-     * @return a 2D String array containing song information (index, title, artist, genre).
+     * @param theChangedSongs freshly parsed songs for created or modified files.
+     * @param theRemovedPaths paths of deleted files or folders.
      */
-    public String[][] toArray() {
-        String[][] myResult = new String[mySongLibrary.size()][4];
+    public void applyChanges(List<Song> theChangedSongs, Collection<String> theRemovedPaths) {
+        // Background searches read the store, so change it under the store's lock.
+        myWaitingWriters.incrementAndGet();
+        synchronized (myStore) {
+            myWaitingWriters.decrementAndGet();
+            myModCount++;
+
+            // Remove deleted files, and every file below a deleted folder, in a single pass.
+            int[] myRemoved = new int[mySongLibrary.size()];
+            int myRemovedCount = 0;
+            if (!theRemovedPaths.isEmpty()) {
+                Set<String> myRemovedSet = new HashSet<>(theRemovedPaths);
+                int myKept = 0;
+                for (int i = 0; i < mySongLibrary.size(); i++) {
+                    Song mySong = mySongLibrary.get(i);
+                    if (isRemoved(absolutePath(mySong), myRemovedSet)) {
+                        myRemoved[myRemovedCount++] = i;
+                        myStore.remove(myStore.rowOf(mySong));
+                    } else {
+                        mySongLibrary.set(myKept++, mySong);
+                    }
+                }
+                mySongLibrary.subList(myKept, mySongLibrary.size()).clear();
+            }
+
+            // Index the remaining songs by path so modified files can be replaced in place.
+            Map<String, Integer> myIndexByPath = new HashMap<>();
+            for (int i = 0; i < mySongLibrary.size(); i++) {
+                myIndexByPath.put(absolutePath(mySongLibrary.get(i)), i);
+            }
+
+            int[] myUpdated = new int[theChangedSongs.size()];
+            int myUpdatedCount = 0;
+            int myFirstAdded = mySongLibrary.size();
+            for (Song mySong : theChangedSongs) {
+                Integer myIndex = myIndexByPath.get(absolutePath(mySong));
+                if (myIndex != null) {
+                    int myRow = myStore.rowOf(mySongLibrary.get(myIndex));
+                    myStore.replace(myRow, mySong);
+                    mySearchIndex.add(myRow);
+                    mySongLibrary.set(myIndex, mySong);
+                    myUpdated[myUpdatedCount++] = myIndex;
+                } else {
+                    myIndexByPath.put(absolutePath(mySong), mySongLibrary.size());
+                    mySongLibrary.add(mySong);
+                    mySearchIndex.add(myStore.add(mySong));
+                }
+            }
+            Arrays.sort(myUpdated, 0, myUpdatedCount);
 
-        // Populate the 2D array with song information (index, title, artist, genre).
-        for (int i = 0; i < mySongLibrary.size(); i++) {
-            myResult[i][0] = i + 1 + "";
-            myResult[i][1] = mySongLibrary.get(i).getSongTitle();
-            myResult[i][2] = mySongLibrary.get(i).getSongArtist();
-            myResult[i][3] = mySongLibrary.get(i).getSongGenre();
+            for (LibraryListener myListener : myListeners) {
+                if (myRemovedCount > 0) {
+                    myListener.songsRemoved(Arrays.copyOf(myRemoved, myRemovedCount));
+                }
+                if (myUpdatedCount > 0) {
+                    myListener.songsUpdated(Arrays.copyOf(myUpdated, myUpdatedCount));
+                }
+                if (mySongLibrary.size() > myFirstAdded) {
+                    myListener.songsAdded(myFirstAdded, mySongLibrary.size() - 1);
+                }
+            }
         }
-        return myResult;
     }
 
-    public String[][] toArray(boolean wasSearched) {
-        String[][] myResult = new String[updatedSongLibrary.size()][4];
-
-        // Populate the 2D array with song information (index, title, artist, genre).
-        for (int i = 0; i < updatedSongLibrary.size(); i++) {
-            myResult[i][0] = i + 1 + "";
-            myResult[i][1] = updatedSongLibrary.get(i).getSongTitle();
-            myResult[i][2] = updatedSongLibrary.get(i).getSongArtist();
-            myResult[i][3] = updatedSongLibrary.get(i).getSongGenre();
+    /**
+     * Checks whether a path or one of its parent folders is in the removed set.
+     */
+    private static boolean isRemoved(String thePath, Set<String> theRemovedPaths) {
+        for (File myFile = new File(thePath); myFile != null; myFile = myFile.getParentFile()) {
+            if (theRemovedPaths.contains(myFile.getPath())) {
+                return true;
+            }
         }
-        return myResult;
+        return false;
     }
 
+    private static String absolutePath(Song theSong) {
+        return new File(theSong.getFilePath()).getAbsolutePath();
+    }
+
+    /**
+     * Retrieves a song from the library by its index.
+     *
+     * @param theIndex the index of the song in the library.
+     * @return the Song object at the specified index.
+     */
+    public Song getSong(int theIndex) {
+        return mySongLibrary.get(theIndex);
+    }
+
+    /**
+     * Adds a song to the library.
+     *
+     * @param theSong the Song object to add to the library.
+     */
+    public void addToLibrary(Song theSong) {
+        mySongLibrary.add(theSong);
+        myWaitingWriters.incrementAndGet();
+        synchronized (myStore) {
+            myWaitingWriters.decrementAndGet();
+            myModCount++;
+            mySearchIndex.add(myStore.add(theSong));
+        }
+    }
 
     /**
      * Provides a formatted string representation of the library contents.
@@ -193,110 +513,164 @@ public class Library {
     /**
      * Sorts the library by song titles in case-insensitive order.
      */
-
-
     public void sortByTitle(boolean wasSearched) {
-        if(wasSearched){
-            Collections.sort(updatedSongLibrary,
-                    Comparator.comparing(Song::getSongTitle, String.CASE_INSENSITIVE_ORDER));
-        }else{
-            Collections.sort(mySongLibrary,
-                    Comparator.comparing(Song::getSongTitle, String.CASE_INSENSITIVE_ORDER));
-        }
+        sortBy(wasSearched, LibraryStore.Column.TITLE);
     }
 
     /**
      * Sorts the library by song artists in case-insensitive order.
      */
     public void sortByArtist(boolean wasSearched) {
-        if(wasSearched){
-            Collections.sort(updatedSongLibrary,
-                    Comparator.comparing(Song::getSongArtist, String.CASE_INSENSITIVE_ORDER));
-        }else{
-            Collections.sort(mySongLibrary,
-                    Comparator.comparing(Song::getSongArtist, String.CASE_INSENSITIVE_ORDER));
-        }
+        sortBy(wasSearched, LibraryStore.Column.ARTIST);
     }
 
     /**
      * Sorts the library by song genres in case-insensitive order.
      */
     public void sortByGenre(boolean wasSearched) {
-        if(wasSearched){
-            Collections.sort(updatedSongLibrary,
-                    Comparator.comparing(Song::getSongGenre, String.CASE_INSENSITIVE_ORDER));
-        }else{
-            Collections.sort(mySongLibrary,
-                    Comparator.comparing(Song::getSongGenre, String.CASE_INSENSITIVE_ORDER));
+        sortBy(wasSearched, LibraryStore.Column.GENRE);
+    }
+
+    /**
+     * Sorts the library or the search results by one or more columns in case-insensitive
+     * order, e.g. by artist and then by title. Songs that are equal in every column are
+     * kept in the order they were added to the library (for the whole library) or in their
+     * current order (for search results).
+     *
+     * The store's collation ranks are used instead of comparing strings, and the sorted
+     * order of the whole library is cached, so switching back to a column the library was
+     * sorted by before only rebuilds the list.
+     *
+     * @param wasSearched whether to sort the search results instead of the library.
+     * @param theColumns the columns to sort by, most significant first.
+     */
+    public void sortBy(boolean wasSearched, LibraryStore.Column... theColumns) {
+        if (wasSearched) {
+            // Sort all matches, not just the pages retrieved so far.
+            loadMoreSearchResults(Integer.MAX_VALUE);
         }
+
+        ArrayList<Song> mySongs = wasSearched ? updatedSongLibrary : mySongLibrary;
+        int[] mySortedRows = wasSearched ? myStore.sort(myStore.rowsOf(mySongs), theColumns)
+                : myStore.sortedLiveRows(theColumns);
+        if (mySortedRows.length != mySongs.size()) {
+            return; // The list holds songs that are not part of this library.
+        }
+
+        ArrayList<Song> mySorted = myStore.songsOf(mySortedRows);
+        mySongs.clear();
+        mySongs.addAll(mySorted);
     }
 
     /**
      * Searches the song library for songs that match the given search term.
-     * Matches are scored based on the relevance to the song's title, artist, and genre.
+     * Matches are scored based on the relevance to the song's title, artist, and genre:
+     * 100 for a title match (+50 if the title starts with the term), 75 for an artist
+     * match (+25 if the artist starts with the term) and 50 for a genre match. Only the
+     * candidates found through the search index are scored.
      *
      * @param searchTerm The term to search for in the song library.
-     * @return A list of songs sorted by relevance score, with the most relevant first.
+     * @return A list of songs sorted by relevance score, with the most relevant first
+     *         and songs of equal score in the order they were added to the library.
      */
     public ArrayList<Song> searchOrder(String searchTerm) {
-        ArrayList<Song> searchResults = new ArrayList<>();
-        HashMap<Song, Integer> matchScores = new HashMap<>();
-
-
-        // Normalize the search term for case-insensitive matching.
-        searchTerm = searchTerm.toLowerCase();
-
-
-        // Score each song based on matches with the search term.
-        for (Song song : mySongLibrary) {
-            int score = 0;
-
+        return setSearchResults(search(searchTerm, null), Integer.MAX_VALUE);
+    }
 
-            // Check for matches in the song title (highest weight).
-            if (song.getSongTitle().toLowerCase().contains(searchTerm)) {
-                score += 100; // Base score for a title match.
-                if (song.getSongTitle().toLowerCase().startsWith(searchTerm)) {
-                    score += 50; // Bonus for matches starting with the term.
+    /**
+     * Searches the library like {@link #searchOrder(String)} but leaves the current search
+     * results alone. Safe to call from a background thread; an interrupted search stops
+     * early with a CancellationException. A search that a change to the library has to
+     * wait for lets the change go first and then starts over; after SEARCH_RESTARTS
+     * restarts it keeps the lock to the end, so a library that keeps changing, e.g.
+     * while a large folder is loaded, cannot hold a search back for good.
+     *
+     * @param theTerm the term to search for.
+     * @param theCandidates the rows to narrow down, e.g. the results of a term the new
+     *                      term contains, or null to search the whole library.
+     * @return the matches, ranked on demand.
+     */
+    public RankedResults search(String theTerm, int[] theCandidates) {
+        for (int myAttempt = 0; ; myAttempt++) {
+            synchronized (myStore) {
+                mySearchMayYield = myAttempt < SEARCH_RESTARTS;
+                try {
+                    return theCandidates == null ? mySearchIndex.search(theTerm)
+                            : mySearchIndex.search(theTerm, theCandidates);
+                } catch (CancellationException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
                 }
             }
-
-
-            // Check for matches in the artist name.
-            if (song.getSongArtist().toLowerCase().contains(searchTerm)) {
-                score += 75; // Base score for an artist match.
-                if (song.getSongArtist().toLowerCase().startsWith(searchTerm)) {
-                    score += 25; // Bonus for matches starting with the term.
+            // A writer is waiting: let it take the lock before searching again.
+            while (myWaitingWriters.get() > 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Search was cancelled");
                 }
+                Thread.yield();
             }
+        }
+    }
 
+    /**
+     * Makes the first page of the given matches the current search results. Further pages
+     * are added with {@link #loadMoreSearchResults(int)}. Must be called on the Event
+     * Dispatch Thread.
+     *
+     * @param theResults matches returned by {@link #search(String, int[])}.
+     * @param thePageSize the number of songs to retrieve now.
+     * @return the current search results.
+     */
+    public ArrayList<Song> setSearchResults(RankedResults theResults, int thePageSize) {
+        mySearchResults = theResults;
+        myRetrievedCount = 0;
+        this.updatedSongLibrary = new ArrayList<>();
+        loadMoreSearchResults(thePageSize);
+        return updatedSongLibrary;
+    }
 
-            // Check for matches in the genre.
-            if (song.getSongGenre().toLowerCase().contains(searchTerm)) {
-                score += 50; // Base score for a genre match.
-            }
-
+    /**
+     * Appends the next page of the current search to the search results. Songs removed
+     * from the library since the search are skipped.
+     *
+     * @param thePageSize the maximum number of songs to append.
+     * @return the number of songs appended.
+     */
+    public int loadMoreSearchResults(int thePageSize) {
+        if (!hasMoreSearchResults()) {
+            return 0;
+        }
 
-            // Add to the match scores if the song has a positive score.
-            if (score > 0) {
-                matchScores.put(song, score);
+        int[] myRows = mySearchResults.page(myRetrievedCount, thePageSize);
+        myRetrievedCount += myRows.length;
+        int myAdded = 0;
+        for (int myRow : myRows) {
+            if (!myStore.isRemoved(myRow)) {
+                updatedSongLibrary.add(myStore.getSong(myRow));
+                myAdded++;
             }
         }
+        return myAdded;
+    }
 
+    /**
+     * Checks whether the current search has matches that are not in the search results yet.
+     *
+     * @return true if more pages can be loaded.
+     */
+    public boolean hasMoreSearchResults() {
+        return mySearchResults != null && myRetrievedCount < mySearchResults.size();
+    }
 
-        // Collect all matched songs into the results list.
-        searchResults.addAll(matchScores.keySet());
-
-
-        // Sort the results by score in descending order.
-        searchResults.sort(new Comparator<Song>() {
-            @Override
-            public int compare(Song s1, Song s2) {
-                return matchScores.get(s2).compareTo(matchScores.get(s1));
-            }
-        });
-
-        this.updatedSongLibrary = searchResults;
-        return  searchResults ;
+    /**
+     * Returns a counter that changes whenever songs are added, modified or removed, so
+     * rows returned by an earlier search can be checked for being outdated.
+     *
+     * @return the modification count.
+     */
+    public int getModCount() {
+        return myModCount;
     }
 
 
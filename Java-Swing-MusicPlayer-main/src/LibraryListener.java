@@ -0,0 +1,43 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        LibraryListener.java
+ */
+
+/**
+ * Receives incremental changes to the songs of a Library. Indices refer to positions
+ * in {@code Library.mySongLibrary}. Listeners are called on the thread that changed
+ * the library, which is the Event Dispatch Thread for changes coming from the
+ * file system watcher.
+ *
+ * @version 28 November 2024
+ */
+public interface LibraryListener {
+
+    /**
+     * Called after songs were removed from the library.
+     *
+     * @param theIndices the indices the songs had before removal, in ascending order.
+     */
+    void songsRemoved(int[] theIndices);
+
+    /**
+     * Called after songs were replaced in place because their files changed.
+     *
+     * @param theIndices the indices of the replaced songs, in ascending order.
+     */
+    void songsUpdated(int[] theIndices);
+
+    /**
+     * Called after songs were appended to the library.
+     *
+     * @param theFirstIndex the index of the first added song.
+     * @param theLastIndex the index of the last added song, inclusive.
+     */
+    void songsAdded(int theFirstIndex, int theLastIndex);
+}
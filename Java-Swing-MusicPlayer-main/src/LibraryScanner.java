@@ -0,0 +1,293 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        LibraryScanner.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Walks a music folder recursively and parses every MP3 file it finds into a Song.
+ * Parsing runs on a fork-join pool whose parallelism is capped so that slow disks
+ * (network shares, spinning drives) are not flooded with concurrent reads.
+ *
+ * @version 28 November 2024
+ */
+public class LibraryScanner {
+
+    /**
+     * Receives progress updates while a scan is running.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called from a scanner thread after songs have been parsed.
+         *
+         * @param theScanned the number of files parsed so far.
+         * @param theTotal the total number of files found.
+         * @param theFilesPerSecond the average throughput since the scan started.
+         */
+        void scanProgress(int theScanned, int theTotal, double theFilesPerSecond);
+    }
+
+    /**
+     * Default number of files parsed at the same time.
+     */
+    public static final int DEFAULT_CONCURRENCY =
+            Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Minimum time between two progress updates, in milliseconds.
+     */
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    /**
+     * The maximum number of files parsed at the same time.
+     */
+    private final int myConcurrency;
+
+    /**
+     * Listener notified of scan progress, may be null.
+     */
+    private final ProgressListener myListener;
+
+    /**
+     * Constructs a scanner with the default concurrency and no progress listener.
+     */
+    public LibraryScanner() {
+        this(DEFAULT_CONCURRENCY, null);
+    }
+
+    /**
+     * Constructs a scanner.
+     *
+     * @param theConcurrency the maximum number of files parsed at the same time.
+     * @param theListener the listener notified of progress, or null.
+     */
+    public LibraryScanner(int theConcurrency, ProgressListener theListener) {
+        if (theConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + theConcurrency);
+        }
+        myConcurrency = theConcurrency;
+        myListener = theListener;
+    }
+
+    /**
+     * Recursively lists the MP3 files below the given folder, sorted by path.
+     *
+     * @param theRoot the folder to walk.
+     * @return the MP3 files found, or an empty list if the folder cannot be read.
+     */
+    public List<File> listAudioFiles(File theRoot) {
+        List<File> myResult = new ArrayList<>();
+
+        if (!theRoot.isDirectory()) {
+            return myResult;
+        }
+
+        try {
+            Files.walkFileTree(theRoot.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path theFile, BasicFileAttributes theAttributes) {
+                    if (theAttributes.isRegularFile() && isAudioFile(theFile.toFile())) {
+                        myResult.add(theFile.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path theFile, IOException theException) {
+                    // Skip unreadable entries instead of aborting the whole walk.
+                    System.out.println("Error reading " + theFile + ": " + theException.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error reading directory: " + e.getMessage());
+        }
+
+        Collections.sort(myResult);
+        return myResult;
+    }
+
+    /**
+     * Scans the given folder and parses every MP3 file in parallel.
+     *
+     * @param theFolderPath the path to the folder containing the songs.
+     * @return the parsed songs, in the same order as {@link #listAudioFiles(File)}.
+     */
+    public ArrayList<Song> scan(String theFolderPath) {
+        return parse(listAudioFiles(new File(theFolderPath)), null);
+    }
+
+    /**
+     * Parses the given files in parallel. Files whose size and modification time match
+     * an entry of the metadata cache are restored from it instead of being parsed.
+     *
+     * @param theFiles the MP3 files to parse.
+     * @param theCache the metadata cache to consult and update, or null.
+     * @return the parsed songs, in the same order as the files.
+     */
+    public ArrayList<Song> parse(List<File> theFiles, MetadataCache theCache) {
+        ArrayList<Song> myResult = new ArrayList<>(theFiles.size());
+        parse(theFiles, theCache, Math.max(1, theFiles.size()), myResult::addAll);
+        return myResult;
+    }
+
+    /**
+     * Parses the given files in parallel like {@link #parse(List, MetadataCache)}, but hands
+     * the songs over in batches as soon as each batch is parsed, so callers can show the
+     * first songs long before the last file is read.
+     *
+     * @param theFiles the MP3 files to parse.
+     * @param theCache the metadata cache to consult and update, or null.
+     * @param theBatchSize the number of songs per batch.
+     * @param theConsumer receives the batches in file order, on the calling thread.
+     */
+    public void parse(List<File> theFiles, MetadataCache theCache, int theBatchSize,
+                      Consumer<List<Song>> theConsumer) {
+        int myTotal = theFiles.size();
+        if (myTotal == 0) {
+            return;
+        }
+
+        long myStart = System.nanoTime();
+        AtomicInteger myScanned = new AtomicInteger();
+        AtomicInteger myCacheHits = new AtomicInteger();
+        AtomicInteger myUnreadable = new AtomicInteger();
+        AtomicLong myLastReport = new AtomicLong(myStart);
+
+        List<Callable<Song>> myTasks = new ArrayList<>(myTotal);
+        for (File myFile : theFiles) {
+            myTasks.add(() -> {
+                Song mySong = theCache == null ? null : theCache.get(myFile);
+                if (mySong != null) {
+                    myCacheHits.incrementAndGet();
+                } else {
+                    mySong = new Song(myFile.getPath());
+                    if (mySong.getSongTitle() == null) {
+                        myUnreadable.incrementAndGet();
+                    }
+                    if (theCache != null) {
+                        theCache.put(myFile, mySong);
+                    }
+                }
+                reportProgress(myScanned.incrementAndGet(), myTotal, myStart, myLastReport);
+                // Share the song with playlists and the player instead of them parsing the file again.
+                return SongRegistry.put(mySong);
+            });
+        }
+
+        int myParsed = 0;
+        ForkJoinPool myPool = new ForkJoinPool(myConcurrency);
+        try {
+            for (int myFrom = 0; myFrom < myTotal; myFrom += theBatchSize) {
+                List<Callable<Song>> myBatchTasks =
+                        myTasks.subList(myFrom, Math.min(myTotal, myFrom + theBatchSize));
+                List<Song> myBatch = new ArrayList<>(myBatchTasks.size());
+                for (Future<Song> myFuture : myPool.invokeAll(myBatchTasks)) {
+                    myBatch.add(myFuture.get());
+                }
+                myParsed += myBatch.size();
+                theConsumer.accept(myBatch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Error scanning library: " + e.getCause());
+        } finally {
+            myPool.shutdown();
+        }
+
+        double mySeconds = (System.nanoTime() - myStart) / 1e9;
+        System.out.printf("Scanned %d files in %.2f s (%.1f files/sec, %d from cache, %d unreadable)%n",
+                myParsed, mySeconds, myParsed / Math.max(mySeconds, 1e-9),
+                myCacheHits.get(), myUnreadable.get());
+    }
+
+    /**
+     * Computes the frame count and length of the given songs in parallel and records
+     * them in the metadata cache. Songs whose timing is already known are skipped.
+     *
+     * @param theSongs the songs to time.
+     * @param theCache the metadata cache to update, or null.
+     */
+    public void loadTimings(List<Song> theSongs, MetadataCache theCache) {
+        long myStart = System.nanoTime();
+        List<Callable<Void>> myTasks = new ArrayList<>();
+        for (Song mySong : theSongs) {
+            if (mySong.isTimingLoaded()) {
+                continue;
+            }
+            myTasks.add(() -> {
+                mySong.getFrameCount();
+                if (theCache != null) {
+                    theCache.put(new File(mySong.getFilePath()), mySong);
+                }
+                return null;
+            });
+        }
+        if (myTasks.isEmpty()) {
+            return;
+        }
+
+        ForkJoinPool myPool = new ForkJoinPool(myConcurrency);
+        try {
+            myPool.invokeAll(myTasks);
+        } finally {
+            myPool.shutdown();
+        }
+        System.out.printf("Computed %d song durations in %.2f s%n",
+                myTasks.size(), (System.nanoTime() - myStart) / 1e9);
+    }
+
+    /**
+     * Notifies the listener, at most once per progress interval and always for the last file.
+     */
+    private void reportProgress(int theScanned, int theTotal, long theStart, AtomicLong theLastReport) {
+        if (myListener == null) {
+            return;
+        }
+
+        long myNow = System.nanoTime();
+        long myLast = theLastReport.get();
+        boolean myIntervalElapsed = myNow - myLast >= PROGRESS_INTERVAL_MILLIS * 1_000_000L
+                && theLastReport.compareAndSet(myLast, myNow);
+
+        if (myIntervalElapsed || theScanned == theTotal) {
+            double mySeconds = Math.max((myNow - theStart) / 1e9, 1e-9);
+            myListener.scanProgress(theScanned, theTotal, theScanned / mySeconds);
+        }
+    }
+
+    /**
+     * Checks whether the file looks like an MP3 file.
+     *
+     * @param theFile the file to check.
+     * @return true if the file name ends with ".mp3".
+     */
+    public static boolean isAudioFile(File theFile) {
+        return theFile.getName().toLowerCase().endsWith(".mp3");
+    }
+}
@@ -0,0 +1,727 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        LibraryStore.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented storage of a library's songs. Each song gets an int row id in
+ * insertion order, and its fields are stored in parallel arrays: titles as strings,
+ * artist and genre as int codes into per-column dictionaries, and frame count and
+ * length as ints. Sorting, filtering and grouping run over these primitive arrays
+ * instead of chasing Song objects.
+ *
+ * Every column can be sorted through precomputed collation ranks: ints that order the
+ * rows the way String.CASE_INSENSITIVE_ORDER orders their values. Ranks are computed
+ * once per change of the store, after which any sort, including multi-column sorts, is a
+ * few passes over int arrays. The sorted order of all rows is cached per column list.
+ *
+ * Row ids stay stable: removed rows are only marked as removed, and a replaced song
+ * keeps the row of the song it replaces. The store is not thread-safe; it is owned by
+ * its Library.
+ *
+ * @version 28 November 2024
+ */
+public class LibraryStore {
+
+    /**
+     * Sortable columns.
+     */
+    public enum Column {
+        TITLE, ARTIST, GENRE
+    }
+
+    /**
+     * Counting sort is used while a column has at most this many ranks per sorted row;
+     * beyond that, sorting packed keys is cheaper than walking the rank counts.
+     */
+    private static final int MAX_RANKS_PER_ROW = 4;
+
+    /**
+     * Returns the collation rank of a row in one column.
+     */
+    private interface RowRank {
+        int rank(int theRow);
+    }
+
+    /**
+     * Maps distinct strings to dense int codes and back.
+     */
+    static final class Dictionary {
+        private final List<String> myValues = new ArrayList<>();
+        private final Map<String, Integer> myCodes = new HashMap<>();
+        private int[] myRanks;
+        private int myRankCount;
+
+        /**
+         * Returns the code of the value, adding it if it is new.
+         */
+        int encode(String theValue) {
+            Integer myCode = myCodes.get(theValue);
+            if (myCode == null) {
+                myCode = myValues.size();
+                myValues.add(theValue);
+                myCodes.put(theValue, myCode);
+            }
+            return myCode;
+        }
+
+        /**
+         * Returns the code of the value, or -1 if it is not in the dictionary.
+         */
+        int find(String theValue) {
+            Integer myCode = myCodes.get(theValue);
+            return myCode != null ? myCode : -1;
+        }
+
+        String decode(int theCode) {
+            return myValues.get(theCode);
+        }
+
+        int size() {
+            return myValues.size();
+        }
+
+        /**
+         * Ranks the codes by case-insensitive value. Values that only differ in case
+         * share a rank, so sorting by rank matches String.CASE_INSENSITIVE_ORDER. The
+         * ranks are cached until a new value is added.
+         *
+         * @return the rank of every code, indexed by code.
+         */
+        int[] ranks() {
+            if (myRanks == null || myRanks.length != myValues.size()) {
+                myRanks = new int[myValues.size()];
+                myRankCount = rank(myValues.toArray(new String[0]), myRanks);
+            }
+            return myRanks;
+        }
+
+        /**
+         * Returns the number of distinct ranks.
+         */
+        int rankCount() {
+            ranks();
+            return myRankCount;
+        }
+    }
+
+    /**
+     * Maps song ids to rows with open addressing over int arrays, so a lookup neither
+     * boxes nor hashes Song objects.
+     */
+    private static final class IdIndex {
+        private static final int EMPTY = -1;
+        private int[] myKeys = newKeys(16);
+        private int[] myRows = new int[16];
+        private int myCount;
+
+        /**
+         * Returns the row of an id, or -1 if the id is not in the index.
+         */
+        int get(int theId) {
+            int myMask = myKeys.length - 1;
+            for (int i = slot(theId, myMask); ; i = (i + 1) & myMask) {
+                if (myKeys[i] == theId) {
+                    return myRows[i];
+                }
+                if (myKeys[i] == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(int theId, int theRow) {
+            if ((myCount + 1) * 2 > myKeys.length) {
+                grow();
+            }
+            int myMask = myKeys.length - 1;
+            int i = slot(theId, myMask);
+            while (myKeys[i] != EMPTY && myKeys[i] != theId) {
+                i = (i + 1) & myMask;
+            }
+            if (myKeys[i] == EMPTY) {
+                myCount++;
+            }
+            myKeys[i] = theId;
+            myRows[i] = theRow;
+        }
+
+        void remove(int theId) {
+            int myMask = myKeys.length - 1;
+            int i = slot(theId, myMask);
+            while (myKeys[i] != theId) {
+                if (myKeys[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & myMask;
+            }
+
+            // Shift back later entries of the probe run so lookups never stop early.
+            for (int j = (i + 1) & myMask; myKeys[j] != EMPTY; j = (j + 1) & myMask) {
+                int myHome = slot(myKeys[j], myMask);
+                boolean myMovable = i <= j ? myHome <= i || myHome > j : myHome <= i && myHome > j;
+                if (myMovable) {
+                    myKeys[i] = myKeys[j];
+                    myRows[i] = myRows[j];
+                    i = j;
+                }
+            }
+            myKeys[i] = EMPTY;
+            myCount--;
+        }
+
+        private void grow() {
+            int[] myOldKeys = myKeys;
+            int[] myOldRows = myRows;
+            myKeys = newKeys(myOldKeys.length * 2);
+            myRows = new int[myOldKeys.length * 2];
+            myCount = 0;
+            for (int i = 0; i < myOldKeys.length; i++) {
+                if (myOldKeys[i] != EMPTY) {
+                    put(myOldKeys[i], myOldRows[i]);
+                }
+            }
+        }
+
+        private static int slot(int theId, int theMask) {
+            int myHash = theId * 0x9E3779B9;
+            return (myHash ^ (myHash >>> 16)) & theMask;
+        }
+
+        private static int[] newKeys(int theCapacity) {
+            int[] myKeys = new int[theCapacity];
+            Arrays.fill(myKeys, EMPTY);
+            return myKeys;
+        }
+    }
+
+    private int mySize;
+    private Song[] mySongs = new Song[16];
+    private String[] myTitles = new String[16];
+    private int[] myArtistCodes = new int[16];
+    private int[] myGenreCodes = new int[16];
+    private int[] myFrameCounts = new int[16];
+    private int[] myLengths = new int[16];
+    private final BitSet myRemoved = new BitSet();
+    private final IdIndex myRowOf = new IdIndex();
+
+    private final Dictionary myArtists = new Dictionary();
+    private final Dictionary myGenres = new Dictionary();
+
+    /**
+     * Counts changes to the rows; cached sorted orders are only valid for the version they
+     * were computed at.
+     */
+    private int myVersion;
+
+    /**
+     * The collation keys of the titles ranked so far, sorted and distinct; a title's rank
+     * is the index of its key. Keys of titles that were changed since stay, so the ranks
+     * of the other rows remain valid.
+     */
+    private String[] myTitleKeys = new String[0];
+
+    /**
+     * The rank of every row's title. Rows from myRankedRows on, and the rows in
+     * myRetitled, are not ranked yet.
+     */
+    private int[] myTitleRanks = new int[0];
+    private int myRankedRows;
+    private final BitSet myRetitled = new BitSet();
+
+    /**
+     * The sorted live rows per column list, valid for mySortedRowsVersion.
+     */
+    private final Map<List<Column>, int[]> mySortedRows = new HashMap<>();
+    private int mySortedRowsVersion;
+
+    /**
+     * Appends a song.
+     *
+     * @param theSong the song to add.
+     * @return the row id of the song.
+     */
+    public int add(Song theSong) {
+        if (mySize == mySongs.length) {
+            int myCapacity = mySize * 2;
+            mySongs = Arrays.copyOf(mySongs, myCapacity);
+            myTitles = Arrays.copyOf(myTitles, myCapacity);
+            myArtistCodes = Arrays.copyOf(myArtistCodes, myCapacity);
+            myGenreCodes = Arrays.copyOf(myGenreCodes, myCapacity);
+            myFrameCounts = Arrays.copyOf(myFrameCounts, myCapacity);
+            myLengths = Arrays.copyOf(myLengths, myCapacity);
+        }
+        int myRow = mySize++;
+        set(myRow, theSong);
+        return myRow;
+    }
+
+    /**
+     * Replaces the song stored in a row, keeping its row id.
+     *
+     * @param theRow the row to overwrite.
+     * @param theSong the new song.
+     */
+    public void replace(int theRow, Song theSong) {
+        myRowOf.remove(mySongs[theRow].getId());
+        set(theRow, theSong);
+    }
+
+    private void set(int theRow, Song theSong) {
+        myVersion++;
+        mySongs[theRow] = theSong;
+        String myTitle = theSong.getSongTitle() != null ? theSong.getSongTitle() : "";
+        if (theRow < myRankedRows && !myTitle.equals(myTitles[theRow])) {
+            myRetitled.set(theRow);
+        }
+        myTitles[theRow] = myTitle;
+        myArtistCodes[theRow] = myArtists.encode(theSong.getSongArtist() != null ? theSong.getSongArtist() : "");
+        myGenreCodes[theRow] = myGenres.encode(theSong.getSongGenre() != null ? theSong.getSongGenre() : "");
+        myRemoved.clear(theRow);
+        myRowOf.put(theSong.getId(), theRow);
+        refreshTiming(theRow);
+    }
+
+    /**
+     * Copies the frame count and length of a row's song into the columns if the song
+     * has loaded them. Rows whose timing is unknown hold -1.
+     *
+     * @param theRow the row to refresh.
+     */
+    public void refreshTiming(int theRow) {
+        Song mySong = mySongs[theRow];
+        boolean myLoaded = mySong.isTimingLoaded();
+        myFrameCounts[theRow] = myLoaded ? mySong.getFrameCount() : -1;
+        myLengths[theRow] = myLoaded ? (int) mySong.getLengthInMilliseconds() : -1;
+    }
+
+    /**
+     * Marks a row as removed. Its id is never reused.
+     *
+     * @param theRow the row to remove.
+     */
+    public void remove(int theRow) {
+        myVersion++;
+        myRemoved.set(theRow);
+        myRowOf.remove(mySongs[theRow].getId());
+    }
+
+    /**
+     * Returns the number of rows ever added, including removed ones.
+     *
+     * @return the row id bound.
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Checks whether a row has been removed.
+     *
+     * @param theRow the row id.
+     * @return true if removed.
+     */
+    public boolean isRemoved(int theRow) {
+        return myRemoved.get(theRow);
+    }
+
+    /**
+     * Returns the row of a song.
+     *
+     * @param theSong the song.
+     * @return its row id, or -1 if the song is not stored.
+     */
+    public int rowOf(Song theSong) {
+        return myRowOf.get(theSong.getId());
+    }
+
+    public Song getSong(int theRow) {
+        return mySongs[theRow];
+    }
+
+    public String getTitle(int theRow) {
+        return myTitles[theRow];
+    }
+
+    public String getArtist(int theRow) {
+        return myArtists.decode(myArtistCodes[theRow]);
+    }
+
+    public String getGenre(int theRow) {
+        return myGenres.decode(myGenreCodes[theRow]);
+    }
+
+    public int getArtistCode(int theRow) {
+        return myArtistCodes[theRow];
+    }
+
+    public int getGenreCode(int theRow) {
+        return myGenreCodes[theRow];
+    }
+
+    /**
+     * Returns the stored length of a row.
+     *
+     * @param theRow the row id.
+     * @return the length in milliseconds, or -1 if not known yet.
+     */
+    public int getLength(int theRow) {
+        return myLengths[theRow];
+    }
+
+    /**
+     * Returns the stored frame count of a row.
+     *
+     * @param theRow the row id.
+     * @return the frame count, or -1 if not known yet.
+     */
+    public int getFrameCount(int theRow) {
+        return myFrameCounts[theRow];
+    }
+
+    /**
+     * Returns the ids of all rows that have not been removed, in insertion order.
+     *
+     * @return the live rows.
+     */
+    public int[] liveRows() {
+        int[] myResult = new int[mySize - myRemoved.cardinality()];
+        int myCount = 0;
+        for (int myRow = 0; myRow < mySize; myRow++) {
+            if (!myRemoved.get(myRow)) {
+                myResult[myCount++] = myRow;
+            }
+        }
+        return myResult;
+    }
+
+    /**
+     * Returns the rows of the given songs, skipping songs that are not stored.
+     *
+     * @param theSongs the songs.
+     * @return their row ids, in the same order.
+     */
+    public int[] rowsOf(List<Song> theSongs) {
+        int[] myResult = new int[theSongs.size()];
+        int myCount = 0;
+        for (Song mySong : theSongs) {
+            int myRow = rowOf(mySong);
+            if (myRow >= 0) {
+                myResult[myCount++] = myRow;
+            }
+        }
+        return myCount == myResult.length ? myResult : Arrays.copyOf(myResult, myCount);
+    }
+
+    /**
+     * Returns the songs of the given rows.
+     *
+     * @param theRows the row ids.
+     * @return the songs, in the same order.
+     */
+    public ArrayList<Song> songsOf(int[] theRows) {
+        ArrayList<Song> myResult = new ArrayList<>(theRows.length);
+        for (int myRow : theRows) {
+            myResult.add(mySongs[myRow]);
+        }
+        return myResult;
+    }
+
+    /**
+     * Sorts rows by one or more columns in case-insensitive order: by the first column,
+     * then rows with equal values by the second column, and so on. The sort is stable,
+     * so rows that are equal in every column keep their order.
+     *
+     * Each column is one stable pass over the collation ranks, from the last column to
+     * the first: a counting sort costing O(rows + ranks) when the column has few ranks
+     * for the number of rows, otherwise a parallel sort of packed primitive keys.
+     *
+     * @param theRows the rows to sort.
+     * @param theColumns the columns to sort by, most significant first.
+     * @return a new array with the rows in sorted order.
+     */
+    public int[] sort(int[] theRows, Column... theColumns) {
+        int[] myResult = theRows.clone();
+        for (int i = theColumns.length - 1; i >= 0; i--) {
+            myResult = sortByRank(myResult, theColumns[i]);
+        }
+        return myResult;
+    }
+
+    /**
+     * Returns all live rows sorted by the given columns, ties in row order. The order
+     * is cached until the store changes, so sorting the whole library by a column it
+     * was sorted by before costs nothing. Callers must not modify the returned array.
+     *
+     * @param theColumns the columns to sort by, most significant first.
+     * @return the sorted live rows.
+     */
+    public int[] sortedLiveRows(Column... theColumns) {
+        if (mySortedRowsVersion != myVersion) {
+            mySortedRows.clear();
+            mySortedRowsVersion = myVersion;
+        }
+        return mySortedRows.computeIfAbsent(List.of(theColumns), theKey -> sort(liveRows(), theColumns));
+    }
+
+    private int[] sortByRank(int[] theRows, Column theColumn) {
+        switch (theColumn) {
+            case ARTIST: {
+                int[] myRanks = myArtists.ranks();
+                return sortByRank(theRows, theRow -> myRanks[myArtistCodes[theRow]], myArtists.rankCount());
+            }
+            case GENRE: {
+                int[] myRanks = myGenres.ranks();
+                return sortByRank(theRows, theRow -> myRanks[myGenreCodes[theRow]], myGenres.rankCount());
+            }
+            default: {
+                int[] myRanks = titleRanks();
+                return sortByRank(theRows, theRow -> myRanks[theRow], myTitleKeys.length);
+            }
+        }
+    }
+
+    /**
+     * Returns the collation rank of every row's title. Only titles added or changed since
+     * the last call are sorted; they are merged into the sorted keys, and the ranks of the
+     * other rows are shifted without comparing strings. Removing rows changes nothing.
+     */
+    private int[] titleRanks() {
+        if (myRankedRows == mySize && myRetitled.isEmpty()) {
+            return myTitleRanks;
+        }
+
+        int[] myPending = new int[mySize - myRankedRows + myRetitled.cardinality()];
+        int myCount = 0;
+        for (int myRow = myRetitled.nextSetBit(0); myRow >= 0; myRow = myRetitled.nextSetBit(myRow + 1)) {
+            myPending[myCount++] = myRow;
+        }
+        for (int myRow = myRankedRows; myRow < mySize; myRow++) {
+            myPending[myCount++] = myRow;
+        }
+        String[] myPendingKeys = new String[myCount];
+        for (int i = 0; i < myCount; i++) {
+            myPendingKeys[i] = collationKey(myTitles[myPending[i]]);
+        }
+        String[] myNewKeys = myPendingKeys.clone();
+        Arrays.parallelSort(myNewKeys);
+
+        // Merge the new keys into the old ones, dropping duplicates, and note where every
+        // old rank ends up.
+        String[] myMerged = new String[myTitleKeys.length + myNewKeys.length];
+        int[] myNewRankOf = new int[myTitleKeys.length];
+        int myMergedCount = 0;
+        for (int i = 0, j = 0; i < myTitleKeys.length || j < myNewKeys.length; ) {
+            boolean isOld = j == myNewKeys.length
+                    || i < myTitleKeys.length && myTitleKeys[i].compareTo(myNewKeys[j]) <= 0;
+            String myKey = isOld ? myTitleKeys[i] : myNewKeys[j++];
+            if (myMergedCount == 0 || !myKey.equals(myMerged[myMergedCount - 1])) {
+                myMerged[myMergedCount++] = myKey;
+            }
+            if (isOld) {
+                myNewRankOf[i++] = myMergedCount - 1;
+            }
+        }
+
+        int[] myRanks = Arrays.copyOf(myTitleRanks, mySize);
+        if (myMergedCount != myTitleKeys.length) {
+            for (int myRow = 0; myRow < myRankedRows; myRow++) {
+                myRanks[myRow] = myNewRankOf[myRanks[myRow]];
+            }
+        }
+        myTitleKeys = Arrays.copyOf(myMerged, myMergedCount);
+        for (int i = 0; i < myCount; i++) {
+            myRanks[myPending[i]] = Arrays.binarySearch(myTitleKeys, myPendingKeys[i]);
+        }
+        myTitleRanks = myRanks;
+        myRankedRows = mySize;
+        myRetitled.clear();
+        return myTitleRanks;
+    }
+    /**
+     * Returns the rows whose artist is the given value.
+     *
+     * @param theRows the rows to filter.
+     * @param theArtist the artist, matched exactly.
+     * @return the matching rows, in the same order.
+     */
+    public int[] filterByArtist(int[] theRows, String theArtist) {
+        return filterByCode(theRows, myArtistCodes, myArtists.find(theArtist));
+    }
+
+    /**
+     * Returns the rows whose genre is the given value.
+     *
+     * @param theRows the rows to filter.
+     * @param theGenre the genre, matched exactly.
+     * @return the matching rows, in the same order.
+     */
+    public int[] filterByGenre(int[] theRows, String theGenre) {
+        return filterByCode(theRows, myGenreCodes, myGenres.find(theGenre));
+    }
+
+    /**
+     * Counts the given rows per artist.
+     *
+     * @param theRows the rows to count.
+     * @return a map from artist to number of rows.
+     */
+    public Map<String, Integer> countByArtist(int[] theRows) {
+        return countByCode(theRows, myArtistCodes, myArtists);
+    }
+
+    /**
+     * Counts the given rows per genre.
+     *
+     * @param theRows the rows to count.
+     * @return a map from genre to number of rows.
+     */
+    public Map<String, Integer> countByGenre(int[] theRows) {
+        return countByCode(theRows, myGenreCodes, myGenres);
+    }
+
+    /**
+     * Sums the known lengths of the given rows.
+     *
+     * @param theRows the rows.
+     * @return the total length in milliseconds, ignoring rows whose length is unknown.
+     */
+    public long totalLength(int[] theRows) {
+        long myTotal = 0;
+        for (int myRow : theRows) {
+            if (myLengths[myRow] > 0) {
+                myTotal += myLengths[myRow];
+            }
+        }
+        return myTotal;
+    }
+
+    /**
+     * Stable sort of rows by rank.
+     */
+    private static int[] sortByRank(int[] theRows, RowRank theRank, int theRankCount) {
+        if (theRankCount <= (long) theRows.length * MAX_RANKS_PER_ROW) {
+            return countingSort(theRows, theRank, theRankCount);
+        }
+
+        // Rank in the high half and position in the low half keeps the sort stable.
+        long[] myKeys = new long[theRows.length];
+        for (int i = 0; i < theRows.length; i++) {
+            myKeys[i] = ((long) theRank.rank(theRows[i]) << 32) | i;
+        }
+        Arrays.parallelSort(myKeys);
+
+        int[] myResult = new int[theRows.length];
+        for (int i = 0; i < myKeys.length; i++) {
+            myResult[i] = theRows[(int) myKeys[i]];
+        }
+        return myResult;
+    }
+
+    private static int[] countingSort(int[] theRows, RowRank theRank, int theRankCount) {
+        int[] myStarts = new int[theRankCount + 1];
+        for (int myRow : theRows) {
+            myStarts[theRank.rank(myRow) + 1]++;
+        }
+        for (int i = 1; i <= theRankCount; i++) {
+            myStarts[i] += myStarts[i - 1];
+        }
+
+        int[] myResult = new int[theRows.length];
+        for (int myRow : theRows) {
+            myResult[myStarts[theRank.rank(myRow)]++] = myRow;
+        }
+        return myResult;
+    }
+
+    private static int[] filterByCode(int[] theRows, int[] theCodes, int theCode) {
+        if (theCode < 0) {
+            return new int[0];
+        }
+        int[] myResult = new int[theRows.length];
+        int myCount = 0;
+        for (int myRow : theRows) {
+            if (theCodes[myRow] == theCode) {
+                myResult[myCount++] = myRow;
+            }
+        }
+        return Arrays.copyOf(myResult, myCount);
+    }
+
+    private static Map<String, Integer> countByCode(int[] theRows, int[] theCodes, Dictionary theDictionary) {
+        int[] myCounts = new int[theDictionary.size()];
+        for (int myRow : theRows) {
+            myCounts[theCodes[myRow]]++;
+        }
+
+        Map<String, Integer> myResult = new HashMap<>();
+        for (int myCode = 0; myCode < myCounts.length; myCode++) {
+            if (myCounts[myCode] > 0) {
+                myResult.put(theDictionary.decode(myCode), myCounts[myCode]);
+            }
+        }
+        return myResult;
+    }
+
+    /**
+     * Computes collation ranks for a set of values: equal ranks for values that are equal
+     * ignoring case, and ascending ranks in String.CASE_INSENSITIVE_ORDER. The values are
+     * mapped to collation keys once and then sorted in parallel with plain string order,
+     * instead of comparing case-insensitively on every comparison.
+     *
+     * @param theValues the values; replaced by their collation keys.
+     * @param theRanks receives the rank of each value, indexed like the values.
+     * @return the number of distinct ranks.
+     */
+    static int rank(String[] theValues, int[] theRanks) {
+        for (int i = 0; i < theValues.length; i++) {
+            theValues[i] = collationKey(theValues[i]);
+        }
+        String[] mySorted = theValues.clone();
+        Arrays.parallelSort(mySorted);
+
+        Map<String, Integer> myRankOf = new HashMap<>(mySorted.length * 2);
+        for (String myKey : mySorted) {
+            myRankOf.putIfAbsent(myKey, myRankOf.size());
+        }
+        for (int i = 0; i < theValues.length; i++) {
+            theRanks[i] = myRankOf.get(theValues[i]);
+        }
+        return myRankOf.size();
+    }
+
+    /**
+     * Maps a value to a key whose natural order is String.CASE_INSENSITIVE_ORDER: that
+     * order compares Character.toLowerCase(Character.toUpperCase(c)) char by char.
+     */
+    private static String collationKey(String theValue) {
+        if (theValue == null) {
+            return "";
+        }
+        char[] myChars = null;
+        for (int i = 0; i < theValue.length(); i++) {
+            char myChar = theValue.charAt(i);
+            char myKey = Character.toLowerCase(Character.toUpperCase(myChar));
+            if (myKey != myChar) {
+                if (myChars == null) {
+                    myChars = theValue.toCharArray();
+                }
+                myChars[i] = myKey;
+            }
+        }
+        return myChars != null ? new String(myChars) : theValue;
+    }
+}
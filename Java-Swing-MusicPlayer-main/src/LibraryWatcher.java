@@ -0,0 +1,341 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        LibraryWatcher.java
+ */
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches a library folder, including its sub folders, and applies created, modified
+ * and deleted MP3 files to the Library incrementally. Events are collected and only
+ * applied once the folder has been quiet for the debounce delay (or the maximum delay
+ * has passed), so copying thousands of files results in a handful of batches instead
+ * of one table refresh per file. Only the changed files are parsed.
+ *
+ * @version 28 November 2024
+ */
+public class LibraryWatcher implements AutoCloseable {
+
+    /**
+     * Upper bound on how long a batch is held back while events keep arriving, as a
+     * multiple of the debounce delay.
+     */
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    private final Library myLibrary;
+    private final File myRoot;
+    private final LibraryScanner myScanner;
+    private final MetadataCache myCache;
+    private final long myDebounceMillis;
+
+    private final WatchService myWatchService;
+    private final Map<WatchKey, Path> myWatchedFolders = new HashMap<>();
+
+    /**
+     * Flushes pending changes after the debounce delay.
+     */
+    private final ScheduledExecutorService myScheduler = Executors.newSingleThreadScheduledExecutor(theTask -> {
+        Thread myThread = new Thread(theTask, "library-watcher-flush");
+        myThread.setDaemon(true);
+        return myThread;
+    });
+
+    /**
+     * Pending changes, guarded by this watcher. Paths map to true if the file was
+     * created or modified and false if it was deleted; the last event wins.
+     */
+    private final Map<String, Boolean> myPending = new HashMap<>();
+    private ScheduledFuture<?> myScheduledFlush;
+    private long myFirstPendingNanos;
+    private boolean myRescanRequested;
+
+    /**
+     * Set while changes are only collected, e.g. while the library first loads the
+     * folder; guarded by this watcher.
+     */
+    private boolean isHeld;
+
+    private Thread myWatchThread;
+
+    /**
+     * Constructs a watcher. Call {@link #start()} to begin watching.
+     *
+     * @param theLibrary the library to update.
+     * @param theRoot the library folder.
+     * @param theScanner the scanner used to parse changed files.
+     * @param theCache the metadata cache to keep up to date, or null.
+     * @param theDebounceMillis how long the folder must be quiet before changes are applied.
+     * @throws IOException if the file system does not support watching.
+     */
+    public LibraryWatcher(Library theLibrary, File theRoot, LibraryScanner theScanner,
+                          MetadataCache theCache, long theDebounceMillis) throws IOException {
+        myLibrary = theLibrary;
+        myRoot = theRoot.getAbsoluteFile();
+        myScanner = theScanner;
+        myCache = theCache;
+        myDebounceMillis = theDebounceMillis;
+        myWatchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Registers the library folder tree and starts the watch thread.
+     *
+     * @throws IOException if the folder cannot be registered.
+     */
+    public void start() throws IOException {
+        registerTree(myRoot.toPath(), null);
+        myWatchThread = new Thread(this::watchLoop, "library-watcher");
+        myWatchThread.setDaemon(true);
+        myWatchThread.start();
+    }
+
+    /**
+     * Collects changes without applying them until {@link #release()} is called.
+     */
+    public synchronized void hold() {
+        isHeld = true;
+    }
+
+    /**
+     * Applies the changes collected while held, and every later change as it happens.
+     */
+    public synchronized void release() {
+        isHeld = false;
+        if (!myPending.isEmpty() || myRescanRequested) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Stops watching. Pending changes are dropped.
+     */
+    @Override
+    public void close() {
+        myScheduler.shutdownNow();
+        try {
+            myWatchService.close();
+        } catch (IOException e) {
+            System.out.println("Error closing library watcher: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers a folder and all of its sub folders. When theNewFiles is not null, the
+     * MP3 files found along the way are collected into it, which covers files copied in
+     * together with a new folder before it was registered.
+     */
+    private void registerTree(Path theFolder, List<Path> theNewFiles) throws IOException {
+        Files.walkFileTree(theFolder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path theDirectory, BasicFileAttributes theAttributes)
+                    throws IOException {
+                WatchKey myKey = theDirectory.register(myWatchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                synchronized (myWatchedFolders) {
+                    myWatchedFolders.put(myKey, theDirectory);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path theFile, BasicFileAttributes theAttributes) {
+                if (theNewFiles != null && LibraryScanner.isAudioFile(theFile.toFile())) {
+                    theNewFiles.add(theFile);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path theFile, IOException theException) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Takes watch keys until the watch service is closed and queues their events.
+     */
+    private void watchLoop() {
+        while (true) {
+            WatchKey myKey;
+            try {
+                myKey = myWatchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path myFolder;
+            synchronized (myWatchedFolders) {
+                myFolder = myWatchedFolders.get(myKey);
+            }
+            if (myFolder != null) {
+                for (WatchEvent<?> myEvent : myKey.pollEvents()) {
+                    handleEvent(myFolder, myEvent);
+                }
+            }
+
+            if (!myKey.reset()) {
+                synchronized (myWatchedFolders) {
+                    myWatchedFolders.remove(myKey);
+                }
+            }
+        }
+    }
+
+    private void handleEvent(Path theFolder, WatchEvent<?> theEvent) {
+        if (theEvent.kind() == OVERFLOW) {
+            // Events were lost; reconcile the whole folder with the library.
+            synchronized (this) {
+                myRescanRequested = true;
+                scheduleFlush();
+            }
+            return;
+        }
+
+        Path myPath = theFolder.resolve((Path) theEvent.context());
+        if (theEvent.kind() == ENTRY_CREATE && Files.isDirectory(myPath)) {
+            List<Path> myNewFiles = new ArrayList<>();
+            try {
+                registerTree(myPath, myNewFiles);
+            } catch (IOException e) {
+                System.out.println("Error watching " + myPath + ": " + e.getMessage());
+            }
+            synchronized (this) {
+                for (Path myFile : myNewFiles) {
+                    myPending.put(myFile.toString(), Boolean.TRUE);
+                }
+                scheduleFlush();
+            }
+            return;
+        }
+
+        boolean myDeleted = theEvent.kind() == ENTRY_DELETE;
+        // Deleted folders have no extension, so let them through to remove their songs.
+        if (!myDeleted && !LibraryScanner.isAudioFile(myPath.toFile())) {
+            return;
+        }
+        synchronized (this) {
+            myPending.put(myPath.toString(), !myDeleted);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Restarts the debounce timer, unless the oldest pending change has already waited
+     * for the maximum delay or the watcher is held. Must hold the lock on this watcher.
+     */
+    private void scheduleFlush() {
+        if (isHeld) {
+            return;
+        }
+        long myNow = System.nanoTime();
+        if (myScheduledFlush == null) {
+            myFirstPendingNanos = myNow;
+        } else {
+            long myWaitedMillis = (myNow - myFirstPendingNanos) / 1_000_000L;
+            if (myWaitedMillis >= myDebounceMillis * MAX_DELAY_FACTOR) {
+                return;
+            }
+            myScheduledFlush.cancel(false);
+        }
+        myScheduledFlush = myScheduler.schedule(this::flush, myDebounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Parses the pending changes and hands them to the library on the Event Dispatch Thread.
+     */
+    private void flush() {
+        Map<String, Boolean> myBatch;
+        boolean myRescan;
+        synchronized (this) {
+            myBatch = new HashMap<>(myPending);
+            myPending.clear();
+            myRescan = myRescanRequested;
+            myRescanRequested = false;
+            myScheduledFlush = null;
+        }
+
+        List<File> myChangedFiles = new ArrayList<>();
+        Set<String> myRemovedPaths = new HashSet<>();
+        if (myRescan) {
+            // Re-list the folder; unchanged files come straight from the metadata cache.
+            myChangedFiles.addAll(myScanner.listAudioFiles(myRoot));
+            Set<String> myExisting = new HashSet<>();
+            for (File myFile : myChangedFiles) {
+                myExisting.add(myFile.getPath());
+            }
+            for (Song mySong : snapshotLibrary()) {
+                String myPath = new File(mySong.getFilePath()).getAbsolutePath();
+                if (!myExisting.contains(myPath)) {
+                    myRemovedPaths.add(myPath);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Boolean> myEntry : myBatch.entrySet()) {
+            File myFile = new File(myEntry.getKey());
+            if (myEntry.getValue() && myFile.isFile()) {
+                myChangedFiles.add(myFile);
+            } else if (!myEntry.getValue()) {
+                myRemovedPaths.add(myEntry.getKey());
+            }
+        }
+        if (myChangedFiles.isEmpty() && myRemovedPaths.isEmpty()) {
+            return;
+        }
+
+        ArrayList<Song> myChangedSongs = myScanner.parse(myChangedFiles, myCache);
+        if (myCache != null) {
+            myCache.save();
+        }
+        System.out.println("Library changed: " + myChangedSongs.size() + " added or modified, "
+                + myRemovedPaths.size() + " removed");
+
+        SwingUtilities.invokeLater(() -> myLibrary.applyChanges(myChangedSongs, myRemovedPaths));
+    }
+
+    /**
+     * Copies the library's song list on the Event Dispatch Thread, which owns it.
+     */
+    private List<Song> snapshotLibrary() {
+        List<Song> mySnapshot = new ArrayList<>();
+        try {
+            SwingUtilities.invokeAndWait(() -> mySnapshot.addAll(myLibrary.mySongLibrary));
+        } catch (Exception e) {
+            System.out.println("Error reading library: " + e.getMessage());
+        }
+        return mySnapshot;
+    }
+}
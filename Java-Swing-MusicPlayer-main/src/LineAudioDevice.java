@@ -0,0 +1,319 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        LineAudioDevice.java
+ */
+
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.player.AudioDeviceBase;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JLayer audio device writing to a Java Sound SourceDataLine through an output thread of
+ * its own. The decoding thread only copies samples into a lock-free PcmRingBuffer; the
+ * "audio-output" thread moves them from there into the line. A garbage collection pause
+ * or a slow disk read on the decoding thread is then absorbed by the ring buffer instead
+ * of being heard.
+ *
+ * Two buffers are configurable, both in milliseconds of audio: the line buffer, which
+ * sets the output latency, and the ring buffer, which sets how long the decoding thread
+ * may stall before the line runs dry. Larger buffers resist glitches on a loaded machine;
+ * smaller ones react faster to play and seek. Starvation is counted at both stages.
+ *
+ * The device can pause: {@link #pause()} stops the line without discarding the samples
+ * buffered in it or in the ring buffer, so {@link #resume()} continues with the very next
+ * sample, and the line position does not advance in between.
+ *
+ * Apart from {@link #getPosition()} and the counters, the device is used by the decoding
+ * thread only. The line is opened with the decoder's output format on the first write.
+ *
+ * @version 28 November 2024
+ */
+public class LineAudioDevice extends AudioDeviceBase {
+
+    /**
+     * Size of the line buffer by default, in milliseconds.
+     */
+    public static final int DEFAULT_LINE_BUFFER_MILLIS = 100;
+
+    /**
+     * Size of the ring buffer by default, in milliseconds.
+     */
+    public static final int DEFAULT_RING_BUFFER_MILLIS = 400;
+
+    /**
+     * How long either thread waits before looking at the ring buffer again, in case a
+     * wake-up was missed.
+     */
+    private static final long WAIT_NANOS = 5_000_000L;
+
+    private final int myLineBufferMillis;
+    private final int myRingBufferMillis;
+
+    /**
+     * The line, the ring buffer feeding it, and the thread moving samples from one to the
+     * other; null until the first write.
+     */
+    private volatile SourceDataLine myLine;
+    private PcmRingBuffer myRing;
+    private Thread myOutputThread;
+
+    /**
+     * The decoding thread while it waits for room in the ring buffer.
+     */
+    private volatile Thread myWaitingWriter;
+
+    private volatile boolean isPaused;
+    private volatile boolean isClosed;
+
+    /**
+     * Set while the end of a song is drained, when an empty ring buffer is expected.
+     */
+    private volatile boolean isDraining;
+
+    /**
+     * The number of times the output thread found the ring buffer empty, and the number of
+     * times the line had played everything it buffered by then, i.e. audible dropouts.
+     */
+    private final AtomicInteger myRingUnderruns = new AtomicInteger();
+    private final AtomicInteger myLineUnderruns = new AtomicInteger();
+
+    /**
+     * Constructs a device with the default buffer sizes.
+     */
+    public LineAudioDevice() {
+        this(DEFAULT_LINE_BUFFER_MILLIS, DEFAULT_RING_BUFFER_MILLIS);
+    }
+
+    /**
+     * Constructs a device.
+     *
+     * @param theLineBufferMillis the size of the line buffer in milliseconds of audio.
+     * @param theRingBufferMillis the size of the ring buffer in milliseconds of audio.
+     */
+    public LineAudioDevice(int theLineBufferMillis, int theRingBufferMillis) {
+        myLineBufferMillis = theLineBufferMillis;
+        myRingBufferMillis = theRingBufferMillis;
+    }
+
+    /**
+     * Stops the line, keeping the samples buffered in it and in the ring buffer.
+     */
+    public void pause() {
+        isPaused = true;
+        if (myLine != null) {
+            myLine.stop();
+        }
+    }
+
+    /**
+     * Starts the line again where it was paused.
+     */
+    public void resume() {
+        isPaused = false;
+        if (myLine != null) {
+            myLine.start();
+            LockSupport.unpark(myOutputThread);
+        }
+    }
+
+    /**
+     * Returns how often the output thread found no samples to pass on while playing.
+     *
+     * @return the number of ring buffer underruns.
+     */
+    public int getRingUnderruns() {
+        return myRingUnderruns.get();
+    }
+
+    /**
+     * Returns how often the line ran out of samples while playing, which is heard as a
+     * dropout.
+     *
+     * @return the number of line underruns.
+     */
+    public int getLineUnderruns() {
+        return myLineUnderruns.get();
+    }
+
+    /**
+     * Opens a line for the given format. Subclasses may supply another line.
+     *
+     * @param theFormat the format of the samples.
+     * @param theBufferBytes the size of the line buffer in bytes.
+     * @return the opened line.
+     * @throws LineUnavailableException if no line is available.
+     */
+    protected SourceDataLine createLine(AudioFormat theFormat, int theBufferBytes)
+            throws LineUnavailableException {
+        SourceDataLine myResult = AudioSystem.getSourceDataLine(theFormat);
+        myResult.open(theFormat, theBufferBytes);
+        return myResult;
+    }
+
+    @Override
+    protected void writeImpl(short[] theSamples, int theOffset, int theLength) throws JavaLayerException {
+        if (myLine == null) {
+            openLine();
+        }
+
+        int myWritten = 0;
+        while (myWritten < theLength && !isClosed) {
+            int myCount = myRing.write(theSamples, theOffset + myWritten, theLength - myWritten);
+            myWritten += myCount;
+            if (myCount > 0) {
+                LockSupport.unpark(myOutputThread);
+            } else {
+                // The ring buffer is full; the output thread wakes this thread once it has room.
+                myWaitingWriter = Thread.currentThread();
+                if (myRing.remaining() == 0) {
+                    LockSupport.parkNanos(this, WAIT_NANOS);
+                }
+                myWaitingWriter = null;
+            }
+        }
+    }
+
+    private void openLine() throws JavaLayerException {
+        Decoder myDecoder = getDecoder();
+        int myRate = myDecoder.getOutputFrequency();
+        int myChannels = myDecoder.getOutputChannels();
+        AudioFormat myFormat = new AudioFormat(myRate, 16, myChannels, true, false);
+        int mySamplesPerMilli = Math.max(1, myRate * myChannels / 1000);
+
+        SourceDataLine myNewLine;
+        try {
+            myNewLine = createLine(myFormat, Math.max(1, myLineBufferMillis) * mySamplesPerMilli * 2);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            throw new JavaLayerException("Cannot open audio line: " + e.getMessage(), e);
+        }
+        myRing = new PcmRingBuffer(Math.max(1, myRingBufferMillis) * mySamplesPerMilli);
+        if (!isPaused) {
+            myNewLine.start();
+        }
+        myLine = myNewLine;
+
+        myOutputThread = new Thread(() -> output(myNewLine), "audio-output");
+        myOutputThread.setDaemon(true);
+        myOutputThread.setPriority(Thread.MAX_PRIORITY);
+        myOutputThread.start();
+    }
+
+    /**
+     * The output thread: moves samples from the ring buffer into the line until the device
+     * is closed. Writing to the line blocks while the line is full; a stopped line takes
+     * what fits and returns, and the rest is written after resume.
+     */
+    private void output(SourceDataLine theLine) {
+        // Chunks of at most half the line buffer, so the line is topped up before it runs
+        // empty; the buffer size is in bytes, two per sample.
+        short[] mySamples = new short[Math.max(2, Math.min(Math.min(myRing.capacity(), 4096),
+                theLine.getBufferSize() / 4))];
+        byte[] myBytes = new byte[mySamples.length * 2];
+
+        // Nothing has been written before the first samples arrive, so that is no underrun.
+        boolean isRingStarved = true;
+        boolean isLineStarved = true;
+
+        while (!isClosed) {
+            int myCount = isPaused ? 0 : myRing.read(mySamples, 0, mySamples.length);
+            if (myCount == 0) {
+                // Count each stretch without samples once; the line only runs dry some time
+                // after the ring buffer did, so it is checked on every wake-up until then.
+                if (!isPaused && !isDraining) {
+                    if (!isRingStarved) {
+                        isRingStarved = true;
+                        myRingUnderruns.incrementAndGet();
+                    }
+                    if (!isLineStarved && theLine.available() >= theLine.getBufferSize()) {
+                        isLineStarved = true;
+                        myLineUnderruns.incrementAndGet();
+                    }
+                }
+                if (isPaused) {
+                    // Nothing to do until resume or close unparks this thread; a pause of
+                    // hours costs no wake-ups.
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, WAIT_NANOS);
+                }
+                continue;
+            }
+            isRingStarved = false;
+            isLineStarved = false;
+            LockSupport.unpark(myWaitingWriter);
+
+            for (int i = 0; i < myCount; i++) {
+                myBytes[2 * i] = (byte) mySamples[i];
+                myBytes[2 * i + 1] = (byte) (mySamples[i] >>> 8);
+            }
+            int myOffset = 0;
+            while (myOffset < myCount * 2 && !isClosed) {
+                myOffset += Math.max(0, theLine.write(myBytes, myOffset, myCount * 2 - myOffset));
+                if (myOffset < myCount * 2) {
+                    if (isPaused) {
+                        LockSupport.park(this);
+                    } else {
+                        LockSupport.parkNanos(this, WAIT_NANOS);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void flushImpl() {
+        if (myLine == null) {
+            return;
+        }
+        // Wait for the output thread to pass on the rest; draining a stopped line would
+        // never return.
+        isDraining = true;
+        while (myRing.available() > 0 && !isPaused && !isClosed) {
+            LockSupport.parkNanos(this, WAIT_NANOS);
+        }
+        if (!isPaused && !isClosed) {
+            myLine.drain();
+        }
+        isDraining = false;
+    }
+
+    @Override
+    protected void closeImpl() {
+        isClosed = true;
+        SourceDataLine myCurrentLine = myLine;
+        if (myCurrentLine == null) {
+            return;
+        }
+
+        // Stopping and flushing the line releases an output thread blocked in write.
+        myCurrentLine.stop();
+        myCurrentLine.flush();
+        LockSupport.unpark(myOutputThread);
+        try {
+            myOutputThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        myCurrentLine.close();
+        myLine = null;
+    }
+
+    @Override
+    public int getPosition() {
+        SourceDataLine myCurrentLine = myLine;
+        return myCurrentLine == null ? 0 : (int) (myCurrentLine.getMicrosecondPosition() / 1000);
+    }
+}
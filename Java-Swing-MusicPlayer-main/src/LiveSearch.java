@@ -0,0 +1,197 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        LiveSearch.java
+ */
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs library searches while the user types. Each new term restarts a short debounce
+ * timer; when it fires, the search runs on a background thread and any search still
+ * running for an older term is cancelled. Results are handed to the listener on the
+ * Event Dispatch Thread, and only for the latest term. Only the first page of results
+ * is ranked and retrieved; the listener can ask the library for more pages.
+ *
+ * When the new term contains the previous one (typically because a character was
+ * appended), every match of the new term is also a match of the previous term, so
+ * only the previous results are scored again instead of the whole library.
+ *
+ * If the library changed while a search ran, its results are still handed to the
+ * listener, and the search runs once more for the changed library. A library that keeps
+ * changing, e.g. while a large folder is loaded, therefore never holds results back.
+ *
+ * All methods must be called on the Event Dispatch Thread.
+ *
+ * @version 28 November 2024
+ */
+public class LiveSearch implements AutoCloseable {
+
+    /**
+     * Receives search results on the Event Dispatch Thread.
+     */
+    public interface ResultListener {
+        /**
+         * Called with the results of the latest search. The results have already been
+         * made the library's current search results.
+         *
+         * @param theTerm the term that was searched for.
+         * @param theResults the first page of matching songs, most relevant first.
+         */
+        void searchCompleted(String theTerm, ArrayList<Song> theResults);
+    }
+
+    private final Library myLibrary;
+    private final int myPageSize;
+    private final ResultListener myListener;
+
+    /**
+     * Delays the search until typing pauses.
+     */
+    private final Timer myDebounceTimer;
+
+    /**
+     * Runs one search at a time off the Event Dispatch Thread.
+     */
+    private final ExecutorService myExecutor = Executors.newSingleThreadExecutor(theTask -> {
+        Thread myThread = new Thread(theTask, "live-search");
+        myThread.setDaemon(true);
+        return myThread;
+    });
+
+    /**
+     * The term waiting for the debounce timer.
+     */
+    private String myPendingTerm;
+
+    /**
+     * The running search, and a number identifying it so results of older searches
+     * can be dropped.
+     */
+    private Future<?> myRunningSearch;
+    private int myGeneration;
+
+    /**
+     * The last applied search, reused to narrow the next one while the library is
+     * unchanged.
+     */
+    private String myLastTerm;
+    private RankedResults myLastResults;
+    private int myLastModCount;
+
+    /**
+     * Constructs a live search over a library.
+     *
+     * @param theLibrary the library to search.
+     * @param theDebounceMillis how long typing must pause before a search starts.
+     * @param thePageSize how many results to retrieve with the first page.
+     * @param theListener receives the results.
+     */
+    public LiveSearch(Library theLibrary, int theDebounceMillis, int thePageSize, ResultListener theListener) {
+        myLibrary = theLibrary;
+        myPageSize = thePageSize;
+        myListener = theListener;
+        myDebounceTimer = new Timer(theDebounceMillis, e -> searchNow(myPendingTerm));
+        myDebounceTimer.setRepeats(false);
+    }
+
+    /**
+     * Schedules a search for the term once typing pauses.
+     *
+     * @param theTerm the search term.
+     */
+    public void search(String theTerm) {
+        myPendingTerm = theTerm;
+        myDebounceTimer.restart();
+    }
+
+    /**
+     * Starts a search for the term right away, cancelling any pending or running search.
+     *
+     * @param theTerm the search term.
+     */
+    public void searchNow(String theTerm) {
+        searchNow(theTerm, false);
+    }
+
+    /**
+     * Starts a search, which is a refresh if it runs again for a library that changed
+     * during the previous search for the same term.
+     */
+    private void searchNow(String theTerm, boolean isRefresh) {
+        cancel();
+        int myTicket = myGeneration;
+
+        // Narrow the previous results if they cover every match of the new term.
+        String myTerm = theTerm.toLowerCase();
+        int myModCount = myLibrary.getModCount();
+        RankedResults myPrevious = myLastTerm != null && myTerm.contains(myLastTerm) && myLastModCount == myModCount
+                ? myLastResults : null;
+
+        myRunningSearch = myExecutor.submit(() -> {
+            RankedResults myResults;
+            try {
+                myResults = myLibrary.search(myTerm, myPrevious != null ? myPrevious.rows() : null);
+            } catch (CancellationException e) {
+                return;
+            }
+            // Rank the first page here rather than on the EDT.
+            myResults.page(0, myPageSize);
+            SwingUtilities.invokeLater(() -> apply(myTicket, theTerm, myTerm, myResults, myModCount, isRefresh));
+        });
+    }
+
+    /**
+     * Cancels the pending and running search without reporting results.
+     */
+    public void cancel() {
+        myDebounceTimer.stop();
+        myGeneration++;
+        if (myRunningSearch != null) {
+            myRunningSearch.cancel(true);
+            myRunningSearch = null;
+        }
+    }
+
+    /**
+     * Hands the results of a search to the listener, unless a newer search was started
+     * meanwhile. If the library changed during the search, the results are handed over
+     * anyway, songs removed meanwhile left out, and the search runs once more; the results
+     * of that refresh are final even if the library changed again.
+     */
+    private void apply(int theTicket, String theTerm, String theLowerCaseTerm, RankedResults theResults,
+                       int theModCount, boolean isRefresh) {
+        if (theTicket != myGeneration) {
+            return;
+        }
+
+        myRunningSearch = null;
+        myLastTerm = theLowerCaseTerm;
+        myLastResults = theResults;
+        myLastModCount = theModCount;
+        myListener.searchCompleted(theTerm, myLibrary.setSearchResults(theResults, myPageSize));
+
+        if (theModCount != myLibrary.getModCount() && !isRefresh) {
+            searchNow(theTerm, true);
+        }
+    }
+
+    /**
+     * Cancels any search and stops the background thread.
+     */
+    @Override
+    public void close() {
+        cancel();
+        myExecutor.shutdownNow();
+    }
+}
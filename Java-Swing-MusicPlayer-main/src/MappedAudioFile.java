@@ -0,0 +1,136 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        MappedAudioFile.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An MP3 file mapped into memory read-only. Streams opened on it read straight from the
+ * mapping: a read is a single copy from the page cache into the caller's array, with no
+ * system call and no intermediate buffer, and a stream opened at an offset, e.g. one
+ * taken from the song's {@link SeekIndex}, starts there without skipping anything.
+ *
+ * Opening the file costs one mapping; any number of streams can then be opened on it at
+ * no cost, so the audio thread maps a song once and reopens it on every seek. The file
+ * is closed as soon as it is mapped; the mapping itself is released when the object is
+ * garbage collected.
+ *
+ * A mapping does not notice when its file is truncated or rewritten in place. Reading a
+ * page past the new end raises an InternalError, not an IOException, and the JVM may raise
+ * it a little after the read that faulted. Readers therefore catch InternalError where
+ * they give up on the whole file, not around single reads.
+ *
+ * @version 28 November 2024
+ */
+public final class MappedAudioFile {
+
+    /**
+     * The mapped file. Only duplicates are read, so its position is never moved.
+     */
+    private final ByteBuffer myData;
+
+    private MappedAudioFile(ByteBuffer theData) {
+        myData = theData;
+    }
+
+    /**
+     * Maps a file.
+     *
+     * @param theFile the file.
+     * @return the mapped file.
+     * @throws IOException if the file cannot be read, or is too large to map.
+     */
+    public static MappedAudioFile open(File theFile) throws IOException {
+        try (FileChannel myChannel = FileChannel.open(theFile.toPath(), StandardOpenOption.READ)) {
+            long mySize = myChannel.size();
+            if (mySize > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + theFile);
+            }
+            return new MappedAudioFile(myChannel.map(FileChannel.MapMode.READ_ONLY, 0, mySize));
+        }
+    }
+
+    /**
+     * Returns the size of the file.
+     *
+     * @return the size in bytes.
+     */
+    public int size() {
+        return myData.capacity();
+    }
+
+    /**
+     * Returns a read-only view of the whole file, positioned at its start.
+     *
+     * @return the contents of the file.
+     */
+    public ByteBuffer contents() {
+        return myData.asReadOnlyBuffer();
+    }
+
+    /**
+     * Opens a stream on the file.
+     *
+     * @param theOffset the byte offset the stream starts at.
+     * @return a stream reading from the offset to the end of the file.
+     */
+    public InputStream openStream(long theOffset) {
+        ByteBuffer myView = myData.duplicate();
+        myView.position((int) Math.max(0, Math.min(theOffset, myView.limit())));
+        return new Stream(myView);
+    }
+
+    /**
+     * An input stream over a view of the mapping. Closing it does nothing; the mapping
+     * belongs to the MappedAudioFile.
+     */
+    private static final class Stream extends InputStream {
+        private final ByteBuffer myView;
+
+        private Stream(ByteBuffer theView) {
+            myView = theView;
+        }
+
+        @Override
+        public int read() {
+            return myView.hasRemaining() ? myView.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] theTarget, int theOffset, int theLength) {
+            if (theLength == 0) {
+                return 0;
+            }
+            if (!myView.hasRemaining()) {
+                return -1;
+            }
+            int myCount = Math.min(theLength, myView.remaining());
+            myView.get(theTarget, theOffset, myCount);
+            return myCount;
+        }
+
+        @Override
+        public long skip(long theCount) {
+            int myCount = (int) Math.max(0, Math.min(theCount, myView.remaining()));
+            myView.position(myView.position() + myCount);
+            return myCount;
+        }
+
+        @Override
+        public int available() {
+            return myView.remaining();
+        }
+    }
+}
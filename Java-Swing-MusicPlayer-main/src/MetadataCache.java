@@ -0,0 +1,280 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        MetadataCache.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of song metadata, stored in a compact binary file next to the
+ * library folder. Entries are keyed by absolute file path and are only reused while
+ * the file's size and modification time are unchanged, so edited or replaced files
+ * are parsed again. The frame count and length of an entry are -1 while unknown, and
+ * the seek index of a song is only stored once the song has been played.
+ *
+ * @version 28 November 2024
+ */
+public class MetadataCache {
+
+    /**
+     * Marks the start of a cache file ("MPMC").
+     */
+    private static final int MAGIC = 0x4D504D43;
+
+    /**
+     * Format version, bumped whenever the entry layout changes.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The file the cache is loaded from and saved to.
+     */
+    private final File myCacheFile;
+
+    /**
+     * Cached entries keyed by absolute file path.
+     */
+    private final Map<String, Entry> myEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Whether the entries changed since the cache was loaded or saved.
+     */
+    private volatile boolean myDirty;
+
+    /**
+     * Metadata of one song together with the file stamp it was read from.
+     */
+    private static final class Entry {
+        private final long mySize;
+        private final long myLastModified;
+        private final String myTitle;
+        private final String myArtist;
+        private final String myGenre;
+        private final int myFrameCount;
+        private final long myLengthInMilliseconds;
+        private final SeekIndex mySeekIndex;
+
+        private Entry(long theSize, long theLastModified, String theTitle, String theArtist,
+                      String theGenre, int theFrameCount, long theLengthInMilliseconds,
+                      SeekIndex theSeekIndex) {
+            mySize = theSize;
+            myLastModified = theLastModified;
+            myTitle = theTitle;
+            myArtist = theArtist;
+            myGenre = theGenre;
+            myFrameCount = theFrameCount;
+            myLengthInMilliseconds = theLengthInMilliseconds;
+            mySeekIndex = theSeekIndex;
+        }
+    }
+
+    /**
+     * Constructs an empty cache backed by the given file.
+     *
+     * @param theCacheFile the file the cache is saved to.
+     */
+    public MetadataCache(File theCacheFile) {
+        myCacheFile = theCacheFile;
+    }
+
+    /**
+     * Returns the cache file used for a library folder: a sibling of the folder named
+     * after it, e.g. "songs.cache" for "src/assets/songs".
+     *
+     * @param theLibraryRoot the library folder.
+     * @return the cache file for that folder.
+     */
+    public static File cacheFileFor(File theLibraryRoot) {
+        File myRoot = theLibraryRoot.getAbsoluteFile();
+        return new File(myRoot.getParentFile(), myRoot.getName() + ".cache");
+    }
+
+    /**
+     * Loads the cache from the given file. A missing, unreadable or outdated file
+     * results in an empty cache.
+     *
+     * @param theCacheFile the cache file.
+     * @return the loaded cache.
+     */
+    public static MetadataCache load(File theCacheFile) {
+        MetadataCache myCache = new MetadataCache(theCacheFile);
+        if (!theCacheFile.isFile()) {
+            return myCache;
+        }
+
+        try (DataInputStream myInput = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(theCacheFile), 1 << 16))) {
+            if (myInput.readInt() != MAGIC || myInput.readInt() != VERSION) {
+                System.out.println("Ignoring outdated metadata cache " + theCacheFile);
+                return myCache;
+            }
+
+            int myCount = myInput.readInt();
+            for (int i = 0; i < myCount; i++) {
+                String myPath = myInput.readUTF();
+                Entry myEntry = new Entry(myInput.readLong(), myInput.readLong(),
+                        myInput.readUTF(), myInput.readUTF(), myInput.readUTF(),
+                        myInput.readInt(), myInput.readLong(),
+                        myInput.readBoolean() ? SeekIndex.readFrom(myInput) : null);
+                myCache.myEntries.put(myPath, myEntry);
+            }
+        } catch (EOFException e) {
+            System.out.println("Metadata cache is truncated, ignoring the rest: " + theCacheFile);
+        } catch (IOException e) {
+            System.out.println("Error reading metadata cache: " + e.getMessage());
+            myCache.myEntries.clear();
+        }
+        return myCache;
+    }
+
+    /**
+     * Returns the cached song for a file if its size and modification time still match.
+     *
+     * @param theFile the MP3 file.
+     * @return a Song built from the cached metadata, or null if the entry is missing or stale.
+     */
+    public Song get(File theFile) {
+        String myPath = theFile.getAbsolutePath();
+        Entry myEntry = myEntries.get(myPath);
+        if (myEntry == null
+                || myEntry.mySize != theFile.length()
+                || myEntry.myLastModified != theFile.lastModified()) {
+            return null;
+        }
+        Song mySong = new Song(theFile.getPath(), myEntry.myTitle, myEntry.myArtist, myEntry.myGenre,
+                myEntry.myFrameCount, myEntry.myLengthInMilliseconds);
+        mySong.setSeekIndex(myEntry.mySeekIndex);
+        return mySong;
+    }
+
+    /**
+     * Stores the metadata of a parsed song. Songs that failed to parse are skipped, and the
+     * frame count, length and seek index are stored as unknown until the song has computed
+     * them. A seek index already cached for the unchanged file is kept.
+     *
+     * @param theFile the MP3 file the song was parsed from.
+     * @param theSong the parsed song.
+     */
+    public void put(File theFile, Song theSong) {
+        if (theSong.getSongTitle() == null) {
+            return;
+        }
+
+        // Only store the timing if it is already known; never read the file just for the cache.
+        boolean myTimed = theSong.isTimingLoaded() && theSong.getFrameCount() > 0;
+        long mySize = theFile.length();
+        long myLastModified = theFile.lastModified();
+        SeekIndex mySeekIndex = theSong.getSeekIndex();
+        if (mySeekIndex == null) {
+            Entry myOld = myEntries.get(theFile.getAbsolutePath());
+            if (myOld != null && myOld.mySize == mySize && myOld.myLastModified == myLastModified) {
+                mySeekIndex = myOld.mySeekIndex;
+            }
+        }
+        myEntries.put(theFile.getAbsolutePath(), new Entry(mySize, myLastModified,
+                theSong.getSongTitle(), theSong.getSongArtist(), theSong.getSongGenre(),
+                myTimed ? theSong.getFrameCount() : -1, myTimed ? theSong.getLengthInMilliseconds() : -1,
+                mySeekIndex));
+        myDirty = true;
+    }
+
+    /**
+     * Drops the entries of files that are no longer part of the library.
+     *
+     * @param theFiles the files currently in the library.
+     */
+    public void retainAll(Collection<File> theFiles) {
+        Set<String> myPaths = new HashSet<>();
+        for (File myFile : theFiles) {
+            myPaths.add(myFile.getAbsolutePath());
+        }
+        if (myEntries.keySet().retainAll(myPaths)) {
+            myDirty = true;
+        }
+    }
+
+    /**
+     * Writes the cache to disk if it changed. The file is written to a temporary file
+     * first and then renamed, so a crash never leaves a half-written cache behind.
+     *
+     * A copy of the entries is written, so the count in the file always matches them. The
+     * cache is marked clean before the copy is taken; an entry stored while the file is
+     * written marks it dirty again, and the next save writes it.
+     */
+    public synchronized void save() {
+        if (!myDirty) {
+            return;
+        }
+        myDirty = false;
+        List<Map.Entry<String, Entry>> mySnapshot = new ArrayList<>(myEntries.entrySet());
+
+        File myTempFile = new File(myCacheFile.getPath() + ".tmp");
+        try (DataOutputStream myOutput = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(myTempFile), 1 << 16))) {
+            myOutput.writeInt(MAGIC);
+            myOutput.writeInt(VERSION);
+            myOutput.writeInt(mySnapshot.size());
+            for (Map.Entry<String, Entry> myMapEntry : mySnapshot) {
+                Entry myEntry = myMapEntry.getValue();
+                myOutput.writeUTF(myMapEntry.getKey());
+                myOutput.writeLong(myEntry.mySize);
+                myOutput.writeLong(myEntry.myLastModified);
+                myOutput.writeUTF(myEntry.myTitle);
+                myOutput.writeUTF(myEntry.myArtist);
+                myOutput.writeUTF(myEntry.myGenre);
+                myOutput.writeInt(myEntry.myFrameCount);
+                myOutput.writeLong(myEntry.myLengthInMilliseconds);
+                myOutput.writeBoolean(myEntry.mySeekIndex != null);
+                if (myEntry.mySeekIndex != null) {
+                    myEntry.mySeekIndex.writeTo(myOutput);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing metadata cache: " + e.getMessage());
+            myTempFile.delete();
+            myDirty = true;
+            return;
+        }
+
+        try {
+            Files.move(myTempFile.toPath(), myCacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error writing metadata cache: " + e.getMessage());
+            myTempFile.delete();
+            myDirty = true;
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return myEntries.size();
+    }
+}
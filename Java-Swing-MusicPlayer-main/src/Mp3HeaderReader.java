@@ -0,0 +1,703 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        Mp3HeaderReader.java
+ */
+
+import org.jaudiotagger.tag.reference.GenreTypes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the tags and the duration of an MP3 file from the head of the file. The ID3v2
+ * tag is parsed directly (or the ID3v1 tag at the end of the file if there is none),
+ * and the frame count is taken from the Xing/Info or VBRI header of the first audio
+ * frame. Constant bitrate files without such a header are timed from the bitrate and
+ * the file size. Only when the bitrate varies and no header is present does the reader
+ * fall back to walking every frame header. Tags and timing are read separately so that
+ * callers can defer the latter. A {@link SeekIndex} always walks every frame header,
+ * so it is only built for songs that are played.
+ *
+ * All reads are positional reads on a FileChannel through a small window, so a typical
+ * file costs a few kilobytes of I/O regardless of its size. The seek index, which needs
+ * the whole file, reads it through a {@link MappedAudioFile} instead.
+ *
+ * @version 28 November 2024
+ */
+public final class Mp3HeaderReader {
+
+    /**
+     * Size of the read window, in bytes.
+     */
+    private static final int WINDOW_SIZE = 16 * 1024;
+
+    /**
+     * How far past the tag to look for the first frame before giving up, in bytes.
+     */
+    private static final int MAX_SYNC_SEARCH = 64 * 1024;
+
+    /**
+     * Number of frames compared to decide whether a file without a VBR header is CBR.
+     */
+    private static final int CBR_PROBE_FRAMES = 8;
+
+    /**
+     * Bitrates in kbps indexed by [version row][layer row][bitrate index].
+     * Version row 0 is MPEG-1, row 1 is MPEG-2 and MPEG-2.5. Layer row 0 is Layer I.
+     */
+    private static final int[][][] BITRATES = {
+            {
+                    {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448, -1},
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, -1},
+                    {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, -1}
+            },
+            {
+                    {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256, -1},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, -1},
+                    {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, -1}
+            }
+    };
+
+    /**
+     * Sample rates in Hz for MPEG-1; MPEG-2 halves and MPEG-2.5 quarters them.
+     */
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+    /**
+     * Title, artist and genre read from the tags of an MP3 file.
+     */
+    public static final class Tags {
+        private final String myTitle;
+        private final String myArtist;
+        private final String myGenre;
+
+        private Tags(String theTitle, String theArtist, String theGenre) {
+            myTitle = theTitle;
+            myArtist = theArtist;
+            myGenre = theGenre;
+        }
+
+        public String getTitle() {
+            return myTitle;
+        }
+
+        public String getArtist() {
+            return myArtist;
+        }
+
+        public String getGenre() {
+            return myGenre;
+        }
+    }
+
+    /**
+     * Frame count and duration of an MP3 file.
+     */
+    public static final class Timing {
+        private final int myFrameCount;
+        private final long myLengthInMilliseconds;
+
+        private Timing(int theFrameCount, long theLengthInMilliseconds) {
+            myFrameCount = theFrameCount;
+            myLengthInMilliseconds = theLengthInMilliseconds;
+        }
+
+        public int getFrameCount() {
+            return myFrameCount;
+        }
+
+        public long getLengthInMilliseconds() {
+            return myLengthInMilliseconds;
+        }
+    }
+
+    /**
+     * A parsed MPEG audio frame header.
+     */
+    static final class FrameHeader {
+        final int myVersionRow;
+        final int myLayer;
+        final int myBitrate;
+        final int mySampleRate;
+        final int mySamplesPerFrame;
+        final int myFrameLength;
+        final boolean myMono;
+        final boolean myMpeg1;
+
+        private FrameHeader(int theVersionRow, int theLayer, int theBitrate, int theSampleRate,
+                            int theSamplesPerFrame, int theFrameLength, boolean theMono, boolean theMpeg1) {
+            myVersionRow = theVersionRow;
+            myLayer = theLayer;
+            myBitrate = theBitrate;
+            mySampleRate = theSampleRate;
+            mySamplesPerFrame = theSamplesPerFrame;
+            myFrameLength = theFrameLength;
+            myMono = theMono;
+            myMpeg1 = theMpeg1;
+        }
+    }
+
+    /**
+     * Positional reader that keeps a small window of the file in memory, or that reads a
+     * mapped file, whose window is the whole file.
+     */
+    static final class Window {
+        private final FileChannel myChannel;
+        private final long mySize;
+        private final ByteBuffer myBuffer;
+        private long myStart = -1;
+
+        Window(FileChannel theChannel) throws IOException {
+            myChannel = theChannel;
+            mySize = theChannel.size();
+            myBuffer = ByteBuffer.allocate(WINDOW_SIZE);
+        }
+
+        Window(MappedAudioFile theFile) {
+            myChannel = null;
+            mySize = theFile.size();
+            myBuffer = theFile.contents();
+            myStart = 0;
+        }
+
+        long size() {
+            return mySize;
+        }
+
+        /**
+         * Returns the unsigned byte at the given position, or -1 past the end of the file.
+         */
+        int get(long thePosition) throws IOException {
+            if (thePosition < 0 || thePosition >= mySize) {
+                return -1;
+            }
+            if (myStart < 0 || thePosition < myStart || thePosition >= myStart + myBuffer.limit()) {
+                fill(thePosition);
+            }
+            return myBuffer.get((int) (thePosition - myStart)) & 0xFF;
+        }
+
+        /**
+         * Reads a 32-bit big-endian value, or -1 if it runs past the end of the file.
+         */
+        int getInt(long thePosition) throws IOException {
+            if (thePosition + 4 > mySize) {
+                return -1;
+            }
+            return (get(thePosition) << 24) | (get(thePosition + 1) << 16)
+                    | (get(thePosition + 2) << 8) | get(thePosition + 3);
+        }
+
+        /**
+         * Reads a byte range, which may be larger than the window.
+         */
+        byte[] getBytes(long thePosition, int theLength) throws IOException {
+            byte[] myResult = new byte[(int) Math.max(0, Math.min(theLength, mySize - thePosition))];
+            if (myChannel == null) {
+                myBuffer.get((int) thePosition, myResult);
+            } else if (myResult.length <= WINDOW_SIZE) {
+                for (int i = 0; i < myResult.length; i++) {
+                    myResult[i] = (byte) get(thePosition + i);
+                }
+            } else {
+                ByteBuffer myTarget = ByteBuffer.wrap(myResult);
+                while (myTarget.hasRemaining()) {
+                    if (myChannel.read(myTarget, thePosition + myTarget.position()) < 0) {
+                        break;
+                    }
+                }
+            }
+            return myResult;
+        }
+
+        private void fill(long thePosition) throws IOException {
+            myBuffer.clear();
+            myStart = thePosition;
+            while (myBuffer.hasRemaining()) {
+                if (myChannel.read(myBuffer, myStart + myBuffer.position()) < 0) {
+                    break;
+                }
+            }
+            myBuffer.flip();
+        }
+    }
+
+    private Mp3HeaderReader() {
+    }
+
+    /**
+     * Reads title, artist and genre from the tags of the given MP3 file. Only the ID3v2
+     * tag at the head of the file, or the 128-byte ID3v1 tag at its end, is read.
+     *
+     * @param theFile the MP3 file.
+     * @return the tags; "N/A" for every field if the file has no tag at all.
+     * @throws IOException if the file cannot be read.
+     */
+    public static Tags readTags(File theFile) throws IOException {
+        try (FileChannel myChannel = FileChannel.open(theFile.toPath(), StandardOpenOption.READ)) {
+            Window myWindow = new Window(myChannel);
+
+            String[] myTags = new String[3];
+            if (readId3v2(myWindow, myTags) < 0) {
+                // No ID3v2 tag: use the ID3v1 tag if there is one, like jaudiotagger does.
+                if (hasId3v1(myWindow)) {
+                    readId3v1(myWindow, myTags);
+                } else {
+                    myTags[0] = "N/A";
+                    myTags[1] = "N/A";
+                    myTags[2] = "N/A";
+                }
+            }
+            return new Tags(myTags[0], myTags[1], myTags[2]);
+        }
+    }
+
+    /**
+     * Reads the frame count and the duration of the given MP3 file.
+     *
+     * @param theFile the MP3 file.
+     * @return the timing.
+     * @throws IOException if the file cannot be read or contains no MPEG audio frame.
+     */
+    public static Timing readTiming(File theFile) throws IOException {
+        try (FileChannel myChannel = FileChannel.open(theFile.toPath(), StandardOpenOption.READ)) {
+            Window myWindow = new Window(myChannel);
+
+            long myAudioStart = Math.max(0, audioStart(myWindow));
+            long myAudioEnd = myWindow.size() - (hasId3v1(myWindow) ? 128 : 0);
+
+            long myFirstFrame = findFirstFrame(myWindow, myAudioStart);
+            if (myFirstFrame < 0) {
+                throw new IOException("No MPEG audio frame found in " + theFile);
+            }
+            FrameHeader myHeader = parseFrameHeader(myWindow.getInt(myFirstFrame));
+
+            int myFrameCount = readVbrFrameCount(myWindow, myFirstFrame, myHeader);
+            if (myFrameCount < 0) {
+                myFrameCount = isConstantBitrate(myWindow, myFirstFrame, myAudioEnd)
+                        ? (int) Math.round((double) (myAudioEnd - myFirstFrame) * myHeader.mySampleRate
+                                / (myHeader.mySamplesPerFrame * 125.0 * myHeader.myBitrate))
+                        : countFrames(myWindow, myFirstFrame, myAudioEnd);
+            }
+
+            long myLength = Math.round(myFrameCount * (double) myHeader.mySamplesPerFrame * 1000
+                    / myHeader.mySampleRate);
+            return new Timing(myFrameCount, myLength);
+        }
+    }
+
+    /**
+     * Builds the seek index of the given MP3 file by hopping from frame header to frame
+     * header. Only the headers are looked at, but the whole file is read once, so it is
+     * mapped rather than read through the window.
+     *
+     * @param theFile the MP3 file.
+     * @param theInterval the number of frames between two entries.
+     * @return the index.
+     * @throws IOException if the file cannot be read or contains no MPEG audio frame.
+     */
+    public static SeekIndex readSeekIndex(File theFile, int theInterval) throws IOException {
+        Window myWindow = new Window(MappedAudioFile.open(theFile));
+
+        long myAudioStart = Math.max(0, audioStart(myWindow));
+        long myAudioEnd = myWindow.size() - (hasId3v1(myWindow) ? 128 : 0);
+
+        long myPosition = findFirstFrame(myWindow, myAudioStart);
+        if (myPosition < 0) {
+            throw new IOException("No MPEG audio frame found in " + theFile);
+        }
+
+        long[] myOffsets = new long[16];
+        int myEntries = 0;
+        int myFrame = 0;
+        while (myPosition + 4 <= myAudioEnd) {
+            FrameHeader myHeader = parseFrameHeader(myWindow.getInt(myPosition));
+            if (myHeader == null) {
+                // Skip junk between frames the same way the decoder resynchronizes.
+                myPosition = findFirstFrame(myWindow, myPosition + 1);
+                if (myPosition < 0 || myPosition >= myAudioEnd) {
+                    break;
+                }
+                continue;
+            }
+            if (myFrame % theInterval == 0) {
+                if (myEntries == myOffsets.length) {
+                    myOffsets = Arrays.copyOf(myOffsets, myEntries * 2);
+                }
+                myOffsets[myEntries++] = myPosition;
+            }
+            myFrame++;
+            myPosition += myHeader.myFrameLength;
+        }
+        return new SeekIndex(theInterval, Arrays.copyOf(myOffsets, myEntries));
+    }
+
+    /**
+     * Returns the offset of the first byte after the ID3v2 tag.
+     *
+     * @return the offset, or -1 if the file has no ID3v2 tag.
+     */
+    static long audioStart(Window theWindow) throws IOException {
+        if (theWindow.get(0) != 'I' || theWindow.get(1) != 'D' || theWindow.get(2) != '3') {
+            return -1;
+        }
+        boolean myHasFooter = theWindow.get(3) == 4 && (theWindow.get(5) & 0x10) != 0;
+        return 10 + syncsafe(theWindow.getInt(6)) + (myHasFooter ? 10 : 0);
+    }
+
+    /**
+     * Parses the ID3v2 tag at the start of the file, if any, into title, artist and genre.
+     *
+     * @return the offset of the first byte after the tag, or -1 if there is no ID3v2 tag.
+     */
+    private static long readId3v2(Window theWindow, String[] theTags) throws IOException {
+        long myAudioStart = audioStart(theWindow);
+        if (myAudioStart < 0) {
+            return -1;
+        }
+
+        int myMajor = theWindow.get(3);
+        int myFlags = theWindow.get(5);
+        long myTagEnd = 10 + syncsafe(theWindow.getInt(6));
+
+        // jaudiotagger reports empty strings for fields missing from an existing tag.
+        theTags[0] = "";
+        theTags[1] = "";
+        theTags[2] = "";
+
+        if (myMajor < 2 || myMajor > 4) {
+            return myAudioStart;
+        }
+        boolean myUnsynchronised = (myFlags & 0x80) != 0;
+
+        long myPosition = 10;
+        if ((myFlags & 0x40) != 0 && myMajor >= 3) {
+            // Skip the extended header.
+            int mySize = theWindow.getInt(10);
+            myPosition += myMajor == 4 ? syncsafe(mySize) : mySize + 4;
+        }
+
+        int myHeaderSize = myMajor == 2 ? 6 : 10;
+        int myFound = 0;
+        while (myPosition + myHeaderSize <= myTagEnd && myFound < 3) {
+            if (theWindow.get(myPosition) == 0) {
+                break; // Padding.
+            }
+
+            String myId;
+            int mySize;
+            int myFrameFlags = 0;
+            if (myMajor == 2) {
+                myId = new String(theWindow.getBytes(myPosition, 3), StandardCharsets.ISO_8859_1);
+                mySize = (theWindow.get(myPosition + 3) << 16) | (theWindow.get(myPosition + 4) << 8)
+                        | theWindow.get(myPosition + 5);
+            } else {
+                myId = new String(theWindow.getBytes(myPosition, 4), StandardCharsets.ISO_8859_1);
+                int myRawSize = theWindow.getInt(myPosition + 4);
+                mySize = myMajor == 4 ? syncsafe(myRawSize) : myRawSize;
+                myFrameFlags = (theWindow.get(myPosition + 8) << 8) | theWindow.get(myPosition + 9);
+            }
+            if (mySize <= 0 || myPosition + myHeaderSize + mySize > myTagEnd) {
+                break;
+            }
+
+            int myField = fieldIndex(myId);
+            if (myField >= 0 && theTags[myField].isEmpty()) {
+                byte[] myBody = readFrameBody(theWindow, myPosition + myHeaderSize, mySize,
+                        myMajor, myFrameFlags, myUnsynchronised);
+                if (myBody != null) {
+                    String myValue = decodeText(myBody);
+                    theTags[myField] = myField == 2 ? resolveGenre(myValue) : myValue;
+                    myFound++;
+                }
+            }
+            myPosition += myHeaderSize + mySize;
+        }
+        return myAudioStart;
+    }
+
+    /**
+     * Maps a frame id to 0 (title), 1 (artist), 2 (genre) or -1 for frames we skip.
+     */
+    private static int fieldIndex(String theId) {
+        switch (theId) {
+            case "TIT2":
+            case "TT2":
+                return 0;
+            case "TPE1":
+            case "TP1":
+                return 1;
+            case "TCON":
+            case "TCO":
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Reads a text frame body, undoing unsynchronisation. Returns null for compressed
+     * or encrypted frames.
+     */
+    private static byte[] readFrameBody(Window theWindow, long thePosition, int theSize, int theMajor,
+                                        int theFrameFlags, boolean theTagUnsynchronised) throws IOException {
+        boolean myUnsynchronised = theTagUnsynchronised;
+        if (theMajor == 3 && (theFrameFlags & 0x00C0) != 0) {
+            return null;
+        }
+        if (theMajor == 4) {
+            if ((theFrameFlags & 0x000C) != 0) {
+                return null;
+            }
+            myUnsynchronised |= (theFrameFlags & 0x0002) != 0;
+            if ((theFrameFlags & 0x0001) != 0) {
+                // Skip the data length indicator.
+                thePosition += 4;
+                theSize -= 4;
+            }
+        }
+
+        byte[] myBody = theWindow.getBytes(thePosition, theSize);
+        if (!myUnsynchronised) {
+            return myBody;
+        }
+
+        // Remove the 0x00 inserted after every 0xFF.
+        int myLength = 0;
+        for (int i = 0; i < myBody.length; i++) {
+            myBody[myLength++] = myBody[i];
+            if ((myBody[i] & 0xFF) == 0xFF && i + 1 < myBody.length && myBody[i + 1] == 0) {
+                i++;
+            }
+        }
+        byte[] myResult = new byte[myLength];
+        System.arraycopy(myBody, 0, myResult, 0, myLength);
+        return myResult;
+    }
+
+    /**
+     * Decodes the first value of an ID3v2 text frame.
+     */
+    private static String decodeText(byte[] theBody) {
+        if (theBody.length == 0) {
+            return "";
+        }
+
+        Charset myCharset;
+        switch (theBody[0]) {
+            case 1:
+                myCharset = StandardCharsets.UTF_16;
+                break;
+            case 2:
+                myCharset = StandardCharsets.UTF_16BE;
+                break;
+            case 3:
+                myCharset = StandardCharsets.UTF_8;
+                break;
+            default:
+                myCharset = StandardCharsets.ISO_8859_1;
+                break;
+        }
+
+        String myText = new String(theBody, 1, theBody.length - 1, myCharset);
+        int myEnd = myText.indexOf('\0');
+        return myEnd >= 0 ? myText.substring(0, myEnd) : myText;
+    }
+
+    /**
+     * Converts numeric genre references such as "(17)" or "17" into genre names.
+     */
+    private static String resolveGenre(String theGenre) {
+        String myGenre = theGenre.trim();
+        if (myGenre.startsWith("(") && myGenre.indexOf(')') > 1) {
+            String myRest = myGenre.substring(myGenre.indexOf(')') + 1);
+            if (!myRest.isEmpty()) {
+                return myRest;
+            }
+            myGenre = myGenre.substring(1, myGenre.indexOf(')'));
+        }
+
+        try {
+            String myName = GenreTypes.getInstanceOf().getValueForId(Integer.parseInt(myGenre));
+            return myName != null ? myName : theGenre;
+        } catch (NumberFormatException e) {
+            return theGenre;
+        }
+    }
+
+    /**
+     * Checks for an ID3v1 tag in the last 128 bytes of the file.
+     */
+    private static boolean hasId3v1(Window theWindow) throws IOException {
+        long myStart = theWindow.size() - 128;
+        return myStart >= 0 && theWindow.get(myStart) == 'T'
+                && theWindow.get(myStart + 1) == 'A' && theWindow.get(myStart + 2) == 'G';
+    }
+
+    /**
+     * Reads title, artist and genre from the ID3v1 tag.
+     */
+    private static void readId3v1(Window theWindow, String[] theTags) throws IOException {
+        long myStart = theWindow.size() - 128;
+        theTags[0] = id3v1Text(theWindow.getBytes(myStart + 3, 30));
+        theTags[1] = id3v1Text(theWindow.getBytes(myStart + 33, 30));
+        String myGenre = GenreTypes.getInstanceOf().getValueForId(theWindow.get(myStart + 127));
+        theTags[2] = myGenre != null ? myGenre : "";
+    }
+
+    private static String id3v1Text(byte[] theBytes) {
+        String myText = new String(theBytes, StandardCharsets.ISO_8859_1);
+        int myEnd = myText.indexOf('\0');
+        return (myEnd >= 0 ? myText.substring(0, myEnd) : myText).trim();
+    }
+
+    /**
+     * Finds the first valid frame header at or after the given offset. A candidate is
+     * only accepted if another valid header follows it, which filters out false syncs.
+     *
+     * @return the offset of the first frame, or -1 if none was found.
+     */
+    static long findFirstFrame(Window theWindow, long theStart) throws IOException {
+        long myLimit = Math.min(theWindow.size() - 4, theStart + MAX_SYNC_SEARCH);
+        for (long myPosition = theStart; myPosition <= myLimit; myPosition++) {
+            if (theWindow.get(myPosition) != 0xFF || (theWindow.get(myPosition + 1) & 0xE0) != 0xE0) {
+                continue;
+            }
+            FrameHeader myHeader = parseFrameHeader(theWindow.getInt(myPosition));
+            if (myHeader == null) {
+                continue;
+            }
+            long myNext = myPosition + myHeader.myFrameLength;
+            if (myNext + 4 > theWindow.size() || parseFrameHeader(theWindow.getInt(myNext)) != null) {
+                return myPosition;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a 4-byte frame header.
+     *
+     * @return the header, or null if the bytes are not a valid Layer I/II/III header.
+     */
+    static FrameHeader parseFrameHeader(int theHeader) {
+        if ((theHeader & 0xFFE00000) != 0xFFE00000) {
+            return null;
+        }
+
+        int myVersion = (theHeader >>> 19) & 0x3;   // 0 = 2.5, 2 = 2, 3 = 1
+        int myLayerBits = (theHeader >>> 17) & 0x3; // 1 = III, 2 = II, 3 = I
+        int myBitrateIndex = (theHeader >>> 12) & 0xF;
+        int mySampleRateIndex = (theHeader >>> 10) & 0x3;
+        int myPadding = (theHeader >>> 9) & 0x1;
+        boolean myMono = ((theHeader >>> 6) & 0x3) == 3;
+
+        if (myVersion == 1 || myLayerBits == 0 || myBitrateIndex == 0 || myBitrateIndex == 15
+                || mySampleRateIndex == 3) {
+            return null;
+        }
+
+        boolean myMpeg1 = myVersion == 3;
+        int myVersionRow = myMpeg1 ? 0 : 1;
+        int myLayer = 4 - myLayerBits;
+        int myBitrate = BITRATES[myVersionRow][myLayer - 1][myBitrateIndex];
+        int mySampleRate = SAMPLE_RATES[mySampleRateIndex] >> (myMpeg1 ? 0 : (myVersion == 2 ? 1 : 2));
+
+        int mySamplesPerFrame;
+        int myFrameLength;
+        if (myLayer == 1) {
+            mySamplesPerFrame = 384;
+            myFrameLength = (12 * myBitrate * 1000 / mySampleRate + myPadding) * 4;
+        } else {
+            mySamplesPerFrame = (myLayer == 3 && !myMpeg1) ? 576 : 1152;
+            myFrameLength = mySamplesPerFrame / 8 * myBitrate * 1000 / mySampleRate + myPadding;
+        }
+        return new FrameHeader(myVersionRow, myLayer, myBitrate, mySampleRate, mySamplesPerFrame,
+                myFrameLength, myMono, myMpeg1);
+    }
+
+    /**
+     * Reads the frame count from a Xing/Info or VBRI header in the first frame.
+     *
+     * @return the number of audio frames, or -1 if the frame has no such header.
+     */
+    private static int readVbrFrameCount(Window theWindow, long theFrame, FrameHeader theHeader)
+            throws IOException {
+        int mySideInfo = theHeader.myMpeg1 ? (theHeader.myMono ? 17 : 32) : (theHeader.myMono ? 9 : 17);
+        long myXing = theFrame + 4 + mySideInfo;
+        int myTag = theWindow.getInt(myXing);
+        if (myTag == 0x58696E67 || myTag == 0x496E666F) { // "Xing" or "Info"
+            int myFlags = theWindow.getInt(myXing + 4);
+            if ((myFlags & 0x1) != 0) {
+                return theWindow.getInt(myXing + 8);
+            }
+        }
+
+        long myVbri = theFrame + 4 + 32;
+        if (theWindow.getInt(myVbri) == 0x56425249) { // "VBRI"
+            return theWindow.getInt(myVbri + 14);
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the bitrate of the first few frames to decide whether the file is CBR.
+     */
+    private static boolean isConstantBitrate(Window theWindow, long theFirstFrame, long theAudioEnd)
+            throws IOException {
+        long myPosition = theFirstFrame;
+        int myBitrate = -1;
+        for (int i = 0; i < CBR_PROBE_FRAMES && myPosition + 4 <= theAudioEnd; i++) {
+            FrameHeader myHeader = parseFrameHeader(theWindow.getInt(myPosition));
+            if (myHeader == null) {
+                break;
+            }
+            if (myBitrate >= 0 && myHeader.myBitrate != myBitrate) {
+                return false;
+            }
+            myBitrate = myHeader.myBitrate;
+            myPosition += myHeader.myFrameLength;
+        }
+        return true;
+    }
+
+    /**
+     * Counts frames by hopping from header to header. Used for VBR files without a
+     * Xing/Info or VBRI header.
+     */
+    static int countFrames(Window theWindow, long theFirstFrame, long theAudioEnd) throws IOException {
+        int myCount = 0;
+        long myPosition = theFirstFrame;
+        while (myPosition + 4 <= theAudioEnd) {
+            FrameHeader myHeader = parseFrameHeader(theWindow.getInt(myPosition));
+            if (myHeader == null) {
+                long myNext = findFirstFrame(theWindow, myPosition + 1);
+                if (myNext < 0 || myNext >= theAudioEnd) {
+                    break;
+                }
+                myPosition = myNext;
+                continue;
+            }
+            myCount++;
+            myPosition += myHeader.myFrameLength;
+        }
+        return myCount;
+    }
+
+    private static int syncsafe(int theValue) {
+        return ((theValue >>> 24) & 0x7F) << 21 | ((theValue >>> 16) & 0x7F) << 14
+                | ((theValue >>> 8) & 0x7F) << 7 | (theValue & 0x7F);
+    }
+}
@@ -9,27 +9,33 @@
  *  File Name:        MusicPlayer.java
  */
 
-import javazoom.jl.player.advanced.AdvancedPlayer;
-import javazoom.jl.player.advanced.PlaybackEvent;
-import javazoom.jl.player.advanced.PlaybackListener;
-
+import javax.swing.*;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This file implements a MusicPlayer class that manages the playback of audio files,
  * supporting both individual songs and playlists.
  *
+ * Songs are played by an AudioEngine on its own audio thread; every method of this class
+ * must be called on the Event Dispatch Thread.
  *
  * @version 28 November 2024
  */
-public class MusicPlayer extends PlaybackListener {
-    // Synchronization object used for pausing and resuming playback.
-    private static final Object playSignal = new Object();
+public class MusicPlayer {
+    // How many times a second the playback slider follows the position of the song, by default.
+    public static final int DEFAULT_POSITION_UPDATE_RATE = 30;
 
     // Reference to the MusicPlayerGUI for updating the UI.
     private final MusicPlayerGUI musicPlayerGUI;
 
+    // Plays the songs on a single audio thread.
+    private final AudioEngine audioEngine;
+
+    // Moves the playback slider along while a song is playing.
+    private final Timer sliderTimer;
+
     // Currently playing song.
     private Song currentSong;
 
@@ -44,17 +50,34 @@ public class MusicPlayer extends PlaybackListener {
     // Index of the currently playing song in the playlist.
     private int currentPlaylistIndex;
 
-    // AdvancedPlayer object for audio playback.
-    private AdvancedPlayer advancedPlayer;
+    // Identifies the playlist being loaded, so songs of a playlist that was replaced meanwhile are dropped.
+    private int playlistGeneration;
+
+    // Whether every song of the playlist has been loaded.
+    private boolean isPlaylistComplete = true;
+
+    // Whether the next song should play as soon as it has been loaded.
+    private boolean isWaitingForNext;
+
+    // The song the audio engine has open and the ticket of its play command; 0 if none.
+    private Song playingSong;
+    private int playTicket;
+
+    // The song queued in the audio engine to follow the playing one without a gap, and its ticket.
+    private Song queuedSong;
+    private int queuedTicket;
 
     // Flag indicating whether playback is paused.
     private boolean isPaused;
 
     // Flag indicating whether the current song has finished playing.
-    private boolean songFinished;
+    private boolean songFinished = true;
+
+    // Flag indicating whether the frame was moved while paused, so resuming has to seek first.
+    private boolean isSeekPending;
 
-    // Flags indicating whether the next or previous button was pressed.
-    private boolean pressedNext, pressedPrev;
+    // The frame the playback slider was last moved to by the timer.
+    private int shownFrame = -1;
 
     // Current frame position in the song (used for pausing and resuming).
     private int currentFrame;
@@ -62,19 +85,56 @@ public class MusicPlayer extends PlaybackListener {
     // Setter method for the current frame.
     public void setCurrentFrame(int frame){
         currentFrame = frame;
+        isSeekPending = true;
     }
 
-    // Current playback time in milliseconds (used for updating the slider).
-    private int currentTimeInMilli;
+    // Constructor.
+    public MusicPlayer(MusicPlayerGUI musicPlayerGUI){
+        this(musicPlayerGUI, DEFAULT_POSITION_UPDATE_RATE);
+    }
 
-    // Setter method for the current time in milliseconds.
-    public void setCurrentTimeInMilli(int timeInMilli){
-        currentTimeInMilli = timeInMilli;
+    // Constructor; the playback slider is moved the given number of times a second.
+    public MusicPlayer(MusicPlayerGUI musicPlayerGUI, int positionUpdatesPerSecond){
+        this(musicPlayerGUI, positionUpdatesPerSecond,
+                LineAudioDevice.DEFAULT_LINE_BUFFER_MILLIS, LineAudioDevice.DEFAULT_RING_BUFFER_MILLIS);
     }
 
-    // Constructor.
-    public MusicPlayer(MusicPlayerGUI musicPlayerGUI){
+    // Constructor; the audio line buffers the given milliseconds of audio, and the ring buffer in front of it
+    // the given milliseconds more. Small buffers start and seek faster, large ones survive a busy machine.
+    public MusicPlayer(MusicPlayerGUI musicPlayerGUI, int positionUpdatesPerSecond,
+                       int lineBufferMillis, int ringBufferMillis){
         this.musicPlayerGUI = musicPlayerGUI;
+
+        // Engine events arrive on the audio thread; handle them on the Event Dispatch Thread.
+        audioEngine = new AudioEngine(() -> new LineAudioDevice(lineBufferMillis, ringBufferMillis),
+                new AudioEngine.Listener() {
+            @Override
+            public void playbackStarted(int ticket) {
+                System.out.println("Playback Started");
+            }
+
+            @Override
+            public void playbackEnded(int ticket) {
+                SwingUtilities.invokeLater(() -> playbackFinished(ticket));
+            }
+
+            @Override
+            public void playbackAdvanced(int endedTicket, int ticket) {
+                SwingUtilities.invokeLater(() -> playbackAdvanced(endedTicket, ticket));
+            }
+        }, AudioEngine.DEFAULT_LOOKAHEAD_MILLIS, AudioEngine.DEFAULT_LOOKAHEAD_BYTES);
+
+        // The position comes from the frames the audio device has played, so the slider doesn't drift. Only
+        // changes are passed on, and the timer coalesces ticks the Event Dispatch Thread couldn't keep up with.
+        sliderTimer = new Timer(1000 / positionUpdatesPerSecond, e -> {
+            if(audioEngine.getState() != AudioEngine.State.PLAYING) return;
+
+            int frame = audioEngine.getFrame();
+            if(frame != shownFrame){
+                shownFrame = frame;
+                musicPlayerGUI.setPlaybackSliderValue(frame);
+            }
+        });
     }
 
     // Loads a single song for playback.
@@ -82,43 +142,43 @@ public class MusicPlayer extends PlaybackListener {
         currentSong = song;
         playlist = null; // Clear any existing playlist.
 
-        // Stop the currently playing song if there is one.
-        if(!songFinished)
-            stopSong();
-
-        // Play the loaded song.
+        // Play the loaded song; it replaces the song playing now.
         if(currentSong != null){
             currentFrame = 0; // Reset the frame position.
-            currentTimeInMilli = 0; // Reset the current time.
             musicPlayerGUI.setPlaybackSliderValue(0); // Reset the playback slider in the GUI.
+            isPaused = false;
             playCurrentSong();
+        }else{
+            stopSong();
         }
     }
 
-    // Loads a playlist of songs from a file.
-    public void loadPlaylist(File playlistFile){
+    // Starts an empty playlist that is filled with appendToPlaylist, and returns the number identifying it.
+    // Must be called on the Event Dispatch Thread, like the other playlist methods.
+    public int startPlaylist(){
+        // Stop the current song without letting it advance to the next one.
+        stopSong();
+
         playlist = new ArrayList<>();
+        currentPlaylistIndex = 0;
+        isPlaylistComplete = false;
+        isWaitingForNext = false;
+        return ++playlistGeneration;
+    }
 
-        // Read song paths from the playlist file.
-        try{
-            FileReader fileReader = new FileReader(playlistFile);
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
+    // Appends loaded songs to the playlist, starting playback with the first one.
+    public void appendToPlaylist(int generation, List<Song> songs){
+        if(generation != playlistGeneration || playlist == null || songs.isEmpty()) return;
 
-            String songPath;
-            while((songPath = bufferedReader.readLine()) != null){
-                Song song = new Song(songPath);
-                playlist.add(song);
-            }
-        }catch(Exception e){
-            e.printStackTrace();
-        }
+        boolean wasEmpty = playlist.isEmpty();
+        playlist.addAll(songs);
 
-        // Start playing the first song in the playlist.
-        if(playlist.size() > 0){
+        if(wasEmpty){
+            // Start playing the first song in the playlist.
             musicPlayerGUI.setPlaybackSliderValue(0);
-            currentTimeInMilli = 0;
             currentSong = playlist.get(0);
             currentFrame = 0;
+            isPaused = false;
 
             // Update the GUI.
             musicPlayerGUI.enablePauseButtonDisablePlayButton();
@@ -126,6 +186,64 @@ public class MusicPlayer extends PlaybackListener {
             musicPlayerGUI.updatePlaybackSlider(currentSong);
 
             playCurrentSong();
+        }else if(isWaitingForNext){
+            // Next was pressed, or a song ended, before the following song had been loaded.
+            isWaitingForNext = false;
+            nextSong();
+        }else{
+            // The playing song may have been the last one loaded.
+            queueNextSong();
+        }
+    }
+
+    // Drops songs whose files were deleted from the playlist, given by their indices in ascending order, so the
+    // playlist stays in step with the table. A deleted song that is playing plays to its end, and the song after
+    // it follows.
+    public void removeFromPlaylist(int generation, int[] indices){
+        if(generation != playlistGeneration || playlist == null) return;
+
+        int kept = 0;
+        int next = 0;
+        int newIndex = currentPlaylistIndex;
+        for(int i = 0; i < playlist.size(); i++){
+            if(next < indices.length && indices[next] == i){
+                next++;
+                if(i <= currentPlaylistIndex) newIndex--;
+            }else{
+                playlist.set(kept++, playlist.get(i));
+            }
+        }
+        playlist.subList(kept, playlist.size()).clear();
+
+        // If the current song itself was removed, the index now points just before the song that followed it.
+        currentPlaylistIndex = newIndex;
+        queueNextSong();
+    }
+
+    // Replaces songs whose files changed with the songs read again from them, at the given indices.
+    public void replaceInPlaylist(int generation, int[] indices, List<Song> songs){
+        if(generation != playlistGeneration || playlist == null) return;
+
+        for(int index : indices){
+            if(index >= playlist.size()) continue;
+            Song old = playlist.get(index);
+            Song replacement = songs.get(index);
+            playlist.set(index, replacement);
+            if(currentSong == old) currentSong = replacement;
+            if(playingSong == old) playingSong = replacement;
+        }
+        queueNextSong();
+    }
+
+    // Marks the playlist as completely loaded.
+    public void finishPlaylist(int generation){
+        if(generation != playlistGeneration) return;
+
+        isPlaylistComplete = true;
+        if(isWaitingForNext){
+            // There is no next song after all.
+            isWaitingForNext = false;
+            if(songFinished) musicPlayerGUI.enablePlayButtonDisablePauseButton();
         }
     }
 
@@ -133,9 +251,9 @@ public class MusicPlayer extends PlaybackListener {
         // Start playing the first song in the playlist.
         if(playlist.size() > 0){
             musicPlayerGUI.setPlaybackSliderValue(0);
-            currentTimeInMilli = 0;
             currentSong = playlist.get(0);
             currentFrame = 0;
+            isPaused = false;
 
             // Update the GUI.
             musicPlayerGUI.enablePauseButtonDisablePlayButton();
@@ -146,37 +264,55 @@ public class MusicPlayer extends PlaybackListener {
         }
     }
 
-    // Pauses the currently playing song.
+    // Pauses the currently playing song, keeping its position.
     public void pauseSong(){
-        if(advancedPlayer != null){
+        if(playTicket != 0 && !isPaused){
             isPaused = true;
-            stopSong();
+            audioEngine.pause();
+            sliderTimer.stop();
+            currentFrame = audioEngine.getFrame();
         }
     }
 
-    // Stops the currently playing song.
+    // Stops the currently playing song. It won't report its end, so a playlist doesn't advance.
     public void stopSong(){
-        if(advancedPlayer != null){
-            advancedPlayer.stop();
-            advancedPlayer.close();
-            advancedPlayer = null;
+        if(playTicket != 0){
+            audioEngine.stop();
+            sliderTimer.stop();
+            playTicket = 0;
+            playingSong = null;
+            queuedSong = null;
+        }
+    }
+
+    // Queues the song after the playing one in the audio engine, so it follows without a gap.
+    private void queueNextSong(){
+        Song next = null;
+        if(playlist != null && currentPlaylistIndex >= 0 && currentPlaylistIndex < playlist.size()
+                && playingSong == playlist.get(currentPlaylistIndex) && currentPlaylistIndex + 1 < playlist.size()){
+            next = playlist.get(currentPlaylistIndex + 1);
+        }
+        if(next != queuedSong){
+            queuedSong = next;
+            queuedTicket = audioEngine.setNext(next);
         }
     }
 
     // Plays the next song in the playlist.
     public void nextSong(){
         if(playlist == null) return; // Do nothing if there is no playlist.
-        if(currentPlaylistIndex + 1 > playlist.size() - 1) return; // Do nothing if at the end of the playlist.
-
-        pressedNext = true;
+        if(currentPlaylistIndex + 1 > playlist.size() - 1){
+            // At the end of the playlist; if it is still loading, play the next song once it arrives.
+            isWaitingForNext = !isPlaylistComplete;
+            return;
+        }
+        isWaitingForNext = false;
 
-        if(!songFinished)
-            stopSong();
+        isPaused = false; // The new song plays from the start, even if the current one is paused.
 
         currentPlaylistIndex++;
         currentSong = playlist.get(currentPlaylistIndex);
         currentFrame = 0;
-        currentTimeInMilli = 0;
 
         // Update the GUI.
         musicPlayerGUI.enablePauseButtonDisablePlayButton();
@@ -191,15 +327,14 @@ public class MusicPlayer extends PlaybackListener {
         if(playlist == null) return; // Do nothing if there is no playlist.
         if(currentPlaylistIndex - 1 < 0) return; // Do nothing if at the beginning of the playlist.
 
-        pressedPrev = true;
+        // Songs load in order, so the previous song is always loaded; just cancel a pending next.
+        isWaitingForNext = false;
 
-        if(!songFinished)
-            stopSong();
+        isPaused = false; // The new song plays from the start, even if the current one is paused.
 
         currentPlaylistIndex--;
         currentSong = playlist.get(currentPlaylistIndex);
         currentFrame = 0;
-        currentTimeInMilli = 0;
 
         // Update the GUI.
         musicPlayerGUI.enablePauseButtonDisablePlayButton();
@@ -213,82 +348,29 @@ public class MusicPlayer extends PlaybackListener {
     public void playCurrentSong(){
         if(currentSong == null) return;
 
-        try{
-            // Create an input stream for the MP3 file.
-            FileInputStream fileInputStream = new FileInputStream(currentSong.getFilePath());
-            BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream);
-
-            // Create a new AdvancedPlayer for playback.
-            advancedPlayer = new AdvancedPlayer(bufferedInputStream);
-            advancedPlayer.setPlayBackListener(this);
-
-            // Updating song title and artist in the GUI.
-            musicPlayerGUI.updateSongTitleAndArtist(getCurrentSong());
-
-            // Start the music playback thread.
-            startMusicThread();
-
-            // Start the playback slider update thread.
-            startPlaybackSliderThread();
-
-        }catch(Exception e){
-            e.printStackTrace();
+        if(isPaused && playTicket != 0 && currentSong == playingSong){
+            // Resume the paused song, moving it first if the slider was dragged.
+            if(isSeekPending)
+                audioEngine.seek(currentFrame);
+            audioEngine.resume();
+        }else{
+            // Start the song from the current frame; this replaces any song the engine has open, and the song
+            // queued after it.
+            playTicket = audioEngine.play(currentSong, currentFrame);
+            playingSong = currentSong;
+            musicPlayerGUI.indexForSeeking(currentSong);
+            queuedSong = null;
+            queueNextSong();
         }
-    }
+        isPaused = false;
+        isSeekPending = false;
+        songFinished = false;
 
-    // Thread for playing the music.
-    private void startMusicThread(){
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try{
-                    if(isPaused){
-                        synchronized(playSignal){
-                            isPaused = false;
-                            playSignal.notify(); // Notify the playback slider thread to continue.
-                        }
-
-                        // Resume playback from the current frame.
-                        advancedPlayer.play(currentFrame, Integer.MAX_VALUE);
-                    }else{
-                        // Start playback from the beginning.
-                        advancedPlayer.play();
-                    }
-                }catch(Exception e){
-                    e.printStackTrace();
-                }
-            }
-        }).start();
-    }
+        // Updating song title and artist in the GUI.
+        musicPlayerGUI.updateSongTitleAndArtist(getCurrentSong());
 
-    // Thread for updating the playback slider.
-    private void startPlaybackSliderThread(){
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                if(isPaused){
-                    try{
-                        synchronized(playSignal){
-                            playSignal.wait(); // Wait for the music thread to notify.
-                        }
-                    }catch(Exception e){
-                        e.printStackTrace();
-                    }
-                }
-
-                // Update the playback slider while the song is playing.
-                while(!isPaused && !songFinished && !pressedNext && !pressedPrev){
-                    try{
-                        currentTimeInMilli++;
-                        int calculatedFrame = (int) ((double) currentTimeInMilli * 2.08 * currentSong.getFrameRatePerMilliseconds());
-                        musicPlayerGUI.setPlaybackSliderValue(calculatedFrame);
-                        Thread.sleep(1); // Sleep for 1 millisecond.
-                    }catch(Exception e){
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }).start();
+        shownFrame = -1;
+        sliderTimer.start();
     }
 
     // Setter method for the current song (used when selecting a song from the table).
@@ -302,40 +384,44 @@ public class MusicPlayer extends PlaybackListener {
         return currentFrame;
     }
 
-    // Called when playback starts.
-    @Override
-    public void playbackStarted(PlaybackEvent evt) {
-        System.out.println("Playback Started");
-        songFinished = false;
-        pressedNext = false;
-        pressedPrev = false;
+    // Called when the audio engine has moved on from a song that ended to the queued song by itself.
+    private void playbackAdvanced(int endedTicket, int ticket) {
+        if(endedTicket != playTicket || ticket != queuedTicket) return; // Stopped or replaced meanwhile.
+
+        currentPlaylistIndex++;
+        currentSong = queuedSong;
+        playingSong = queuedSong;
+        playTicket = ticket;
+        queuedSong = null;
+        currentFrame = 0;
+        shownFrame = -1;
+
+        // Update the GUI.
+        musicPlayerGUI.updateSongTitleAndArtist(currentSong);
+        musicPlayerGUI.updatePlaybackSlider(currentSong);
+        musicPlayerGUI.indexForSeeking(currentSong);
+
+        queueNextSong();
     }
 
-    // Called when playback finishes.
-    @Override
-    public void playbackFinished(PlaybackEvent evt) {
+    // Called when the audio engine has played a song to its end.
+    private void playbackFinished(int ticket) {
+        if(ticket != playTicket) return; // The song was stopped or replaced meanwhile.
         System.out.println("Playback Finished");
 
-        if(isPaused){
-            // If paused, update the current frame based on the event.
-            currentFrame += (int) ((double) evt.getFrame() * currentSong.getFrameRatePerMilliseconds());
-        }else{
-            if(pressedNext || pressedPrev) return; // Do nothing if next or previous button was pressed.
-
-            songFinished = true;
+        songFinished = true;
+        sliderTimer.stop();
+        playTicket = 0;
+        playingSong = null;
+        queuedSong = null;
+        currentFrame = 0; // Playing the song again starts it from the beginning.
 
-            if(playlist == null){
-                // If no playlist, update the GUI to show the play button.
-                musicPlayerGUI.enablePlayButtonDisablePauseButton();
-            }else{
-                if(currentPlaylistIndex == playlist.size() - 1){
-                    // If it was the last song in the playlist, update the GUI to show the play button.
-                    musicPlayerGUI.enablePlayButtonDisablePauseButton();
-                }else{
-                    // Otherwise, play the next song in the playlist.
-                    nextSong();
-                }
-            }
+        if(playlist == null || (currentPlaylistIndex == playlist.size() - 1 && isPlaylistComplete)){
+            // If no playlist, or it was the last song in the playlist, update the GUI to show the play button.
+            musicPlayerGUI.enablePlayButtonDisablePauseButton();
+        }else{
+            // Otherwise, play the next song in the playlist, waiting for it if it is not loaded yet.
+            nextSong();
         }
     }
 }
\ No newline at end of file
@@ -11,13 +11,17 @@
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 
 /**
  * Initializes the GUI for the music player
@@ -34,6 +38,39 @@ public class MusicPlayerGUI extends JFrame {
     public static final Color TEXT_COLOR_SECONDARY = Color.GRAY;
 
     private boolean wasSearched = false;
+
+    // Whether the table currently shows the whole library (not a search result or playlist).
+    private boolean isShowingLibrary = true;
+
+    // Quiet period before file system changes in the songs folder are applied.
+    private static final long LIBRARY_WATCH_DEBOUNCE_MILLIS = 500;
+
+    // Pause in typing before the search box runs a search.
+    private static final int SEARCH_DEBOUNCE_MILLIS = 150;
+
+    // Number of search results added to the table at a time.
+    private static final int SEARCH_PAGE_SIZE = 500;
+
+    // Number of songs added to the table at a time while the library loads.
+    private static final int LIBRARY_LOAD_BATCH_SIZE = 256;
+
+    // Number of songs added to the table and the player at a time while a playlist loads, after the first song.
+    private static final int PLAYLIST_LOAD_BATCH_SIZE = 64;
+
+    // Number of times a second the playback slider follows the playing song.
+    private static final int POSITION_UPDATE_RATE = MusicPlayer.DEFAULT_POSITION_UPDATE_RATE;
+
+    // Milliseconds of audio buffered by the audio line and by the ring buffer feeding it; raise them if playback
+    // drops out on a busy machine, lower them for faster starts and seeks.
+    private static final int LINE_BUFFER_MILLIS = LineAudioDevice.DEFAULT_LINE_BUFFER_MILLIS;
+    private static final int RING_BUFFER_MILLIS = LineAudioDevice.DEFAULT_RING_BUFFER_MILLIS;
+
+    // Whether the window and the first songs have been shown, for the startup timings.
+    private boolean wasPainted = false;
+    private boolean wereSongsShown = false;
+
+    // Whether the table shows search results that can still grow by another page.
+    private boolean isShowingSearchResults = false;
     // The underlying MusicPlayer object responsible for audio playback.
     private MusicPlayer myMusicPlayer;
 
@@ -42,7 +79,12 @@ public class MusicPlayerGUI extends JFrame {
 
     // Library to hold all Song objects.
     private Library myLibrary;
-    private String[][] currentSongList;
+
+    // Table model showing the library, search results or a playlist without copying them.
+    private SongTableModel myTableModel;
+
+    // Searches the library in the background while the user types.
+    private LiveSearch myLiveSearch;
 
     // GUI components for displaying song information and controlling playback.
     private JLabel mySongTitle, mySongArtist, myTableTitle;
@@ -75,14 +117,21 @@ public class MusicPlayerGUI extends JFrame {
         setIconImage(loadImage("src/assets/icon.png").getImage());
 
         // Initialize the MusicPlayer and JFileChooser objects.
-        myMusicPlayer = new MusicPlayer(this);
+        myMusicPlayer = new MusicPlayer(this, POSITION_UPDATE_RATE, LINE_BUFFER_MILLIS, RING_BUFFER_MILLIS);
         myJFileChooser = new JFileChooser();
 
         // Set the default directory for the file chooser.
         myJFileChooser.setCurrentDirectory(new File("src/assets"));
 
-        // Initialize the Library with the path to the song directory.
-        myLibrary = new Library("src/assets/songs");
+        // Load the library in the background; the table fills up batch by batch while the window is shown.
+        // Songs added to or removed from the songs folder are picked up while the player runs, including
+        // during the load.
+        myLibrary = new Library("src/assets/songs", new LibraryScanner(), LIBRARY_LOAD_BATCH_SIZE,
+                LIBRARY_WATCH_DEBOUNCE_MILLIS, () -> {
+            logStartupTime("Library fully loaded (" + myLibrary.mySongLibrary.size() + " songs)");
+            myLibrary.precomputeDurations();
+        });
+        myLibrary.addLibraryListener(new LibraryTableUpdater());
 
         // Filter the file chooser to display only MP3 files.
         myJFileChooser.setFileFilter(new FileNameExtensionFilter("MP3", "mp3"));
@@ -106,18 +155,33 @@ public class MusicPlayerGUI extends JFrame {
         JTextField theSearchBox = new JTextField(20);
         theSearchPanel.add(theSearchBox);
 
-        JButton theSearchButton = new JButton("Search");
-        theSearchButton.addActionListener(e -> {
-            if(theSearchBox.getText() != null && !(theSearchBox.getText().equals(""))){
-                wasSearched = true;
-                ArrayList<Song> searchTable = myLibrary.searchOrder(theSearchBox.getText());
-                updateTable(searchTable);
-            }else{
-                wasSearched = false;
-                updateTable();
+        // Results arrive on the EDT once the background search for the latest term is done.
+        myLiveSearch = new LiveSearch(myLibrary, SEARCH_DEBOUNCE_MILLIS, SEARCH_PAGE_SIZE, (term, searchTable) -> {
+            wasSearched = true;
+            updateTable(searchTable);
+            isShowingSearchResults = true;
+        });
+
+        // Search as the user types.
+        theSearchBox.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchFor(theSearchBox.getText(), false);
             }
 
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchFor(theSearchBox.getText(), false);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not change the text.
+            }
         });
+
+        JButton theSearchButton = new JButton("Search");
+        theSearchButton.addActionListener(e -> searchFor(theSearchBox.getText(), true));
         theSearchPanel.add(theSearchButton);
 
 
@@ -168,6 +232,13 @@ public class MusicPlayerGUI extends JFrame {
         });
         sortMenu.add(genreSortItem);
 
+        JMenuItem artistTitleSortItem = new JMenuItem("Artist, then Title");
+        artistTitleSortItem.addActionListener(e -> {
+            myLibrary.sortBy(wasSearched, LibraryStore.Column.ARTIST, LibraryStore.Column.TITLE);
+            updateTable(wasSearched);
+        });
+        sortMenu.add(artistTitleSortItem);
+
         // --- Playlist Submenu ---
         JMenu playlistMenu = new JMenu("Playlist");
         menuBar.add(playlistMenu);
@@ -178,6 +249,10 @@ public class MusicPlayerGUI extends JFrame {
             public void actionPerformed(ActionEvent e) {
 
                 if(wasSearched){
+                    // Offer every match, not just the pages shown so far.
+                    if (isShowingSearchResults) {
+                        loadMoreSearchResults(Integer.MAX_VALUE);
+                    }
                     PlaylistDialogBox playlistBox = new PlaylistDialogBox(myLibrary.updatedSongLibrary, MusicPlayerGUI.this);
                     playlistBox.setVisible(true);
                 }else{
@@ -199,12 +274,33 @@ public class MusicPlayerGUI extends JFrame {
                 // Get the selected file
                 File playlistFile = fileChooser.getSelectedFile();
 
-                // Load the playlist and update the table
-                Library newLibrary = new Library("Playlist Name",playlistFile.toString());
+                // Load the playlist in the background; the first song plays as soon as it is read, and the
+                // rest are appended to the player and the table as they arrive.
+                int playlistGeneration = myMusicPlayer.startPlaylist();
+                Library newLibrary = new Library(playlistFile, PLAYLIST_LOAD_BATCH_SIZE,
+                        () -> myMusicPlayer.finishPlaylist(playlistGeneration));
+                newLibrary.addLibraryListener(new PlaylistTableUpdater(newLibrary.mySongLibrary));
+                newLibrary.addLibraryListener(new LibraryListener() {
+                    // The player's playlist follows the songs by index, so it gets every change the table gets.
+                    @Override
+                    public void songsRemoved(int[] theIndices) {
+                        myMusicPlayer.removeFromPlaylist(playlistGeneration, theIndices);
+                    }
+
+                    @Override
+                    public void songsUpdated(int[] theIndices) {
+                        myMusicPlayer.replaceInPlaylist(playlistGeneration, theIndices, newLibrary.mySongLibrary);
+                    }
+
+                    @Override
+                    public void songsAdded(int theFirstIndex, int theLastIndex) {
+                        myMusicPlayer.appendToPlaylist(playlistGeneration,
+                                newLibrary.mySongLibrary.subList(theFirstIndex, theLastIndex + 1));
+                    }
+                });
                 myTableTitle.setText(playlistFile.getName().substring(0,playlistFile.getName().indexOf(".")));
 
-                myMusicPlayer.loadPlaylist(playlistFile);
-                updateTable(newLibrary.mySongLibrary); // Assuming getCurrentSong returns the first song of the playlist
+                updateTable(newLibrary.mySongLibrary);
             }
         });
         playlistMenu.add(loadPlaylistItem);
@@ -223,10 +319,10 @@ public class MusicPlayerGUI extends JFrame {
         myTableTitle.setAlignmentX(Component.CENTER_ALIGNMENT);
         theCenterPanel.add(myTableTitle);
 
-        String[] theColumnNames = {"", "Title", "Artist", "Genre"};
-        String[][] theTableData = myLibrary.toArray();
+        myTableModel = new SongTableModel();
+        myTableModel.setSongs(myLibrary.mySongLibrary);
 
-        myLibraryTable = new JTable(theTableData, theColumnNames) {
+        myLibraryTable = new JTable(myTableModel) {
             @Override
             public boolean isCellEditable(int theRow, int column) {
                 return false; // Make table cells non-editable.
@@ -240,14 +336,23 @@ public class MusicPlayerGUI extends JFrame {
         theScrollPane.setPreferredSize(new Dimension(300, 100)); // Reduced height to 100.
         theCenterPanel.add(theScrollPane);
 
+        // Add the next page of search results when the table is scrolled to the bottom.
+        theScrollPane.getVerticalScrollBar().addAdjustmentListener(e -> {
+            BoundedRangeModel theScrollModel = theScrollPane.getVerticalScrollBar().getModel();
+            if (isShowingSearchResults && !e.getValueIsAdjusting()
+                    && theScrollModel.getValue() + theScrollModel.getExtent() >= theScrollModel.getMaximum()) {
+                loadMoreSearchResults(SEARCH_PAGE_SIZE);
+            }
+        });
+
         // Add MouseListener to handle song selection from the table.
         myLibraryTable.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
                 int theRow = myLibraryTable.rowAtPoint(e.getPoint());
                 if (theRow >= 0) {
-                    String theTableSelection = (String) myLibraryTable.getValueAt(theRow, 1);
-                    Song theSongSelection = myLibrary.getSong(theTableSelection);
+                    // Resolve the clicked row to its song directly, so songs with equal titles are told apart.
+                    Song theSongSelection = myTableModel.getSong(theRow);
                     myMusicPlayer.setSelectedSong(theSongSelection);
                 }
             }
@@ -287,7 +392,6 @@ public class MusicPlayerGUI extends JFrame {
                 JSlider theSource = (JSlider) e.getSource();
                 int theFrame = theSource.getValue();
                 myMusicPlayer.setCurrentFrame(theFrame);
-                myMusicPlayer.setCurrentTimeInMilli((int) (theFrame / (2.08 * myMusicPlayer.getCurrentSong().getFrameRatePerMilliseconds())));
                 myMusicPlayer.playCurrentSong(); // Resume playback when slider is released.
                 enablePauseButtonDisablePlayButton();
             }
@@ -299,6 +403,27 @@ public class MusicPlayerGUI extends JFrame {
     }
 
 
+    // Searches the library for the term, or shows the whole library again if the term is empty. Only clicking
+    // Search on an empty box makes the library the playlist again; clearing the box while typing leaves the
+    // player alone.
+    private void searchFor(String term, boolean immediately) {
+        if(term != null && !(term.equals(""))){
+            if (immediately) {
+                myLiveSearch.searchNow(term);
+            } else {
+                myLiveSearch.search(term);
+            }
+        }else{
+            myLiveSearch.cancel();
+            wasSearched = false;
+            if (immediately) {
+                updateTable();
+            } else {
+                updateTable(false);
+            }
+        }
+    }
+
     // Method to add playback control buttons to the GUI.
     private void addPlaybackBtns(){
         myPlaybackBtns = new JPanel();
@@ -365,6 +490,11 @@ public class MusicPlayerGUI extends JFrame {
         myPlaybackSlider.setValue(theFrame);
     }
 
+    // Method to have the seek index of a song built, so seeking in it doesn't read every earlier frame.
+    public void indexForSeeking(Song song){
+        myLibrary.indexForSeeking(song);
+    }
+
     // Method to update the song title and artist labels.
     public void updateSongTitleAndArtist(Song song){
         mySongTitle.setText(song.getSongTitle());
@@ -373,7 +503,7 @@ public class MusicPlayerGUI extends JFrame {
 
     // Method to update the playback slider with information from the current song.
     public void updatePlaybackSlider(Song song){
-        myPlaybackSlider.setMaximum(song.getMp3File().getFrameCount());
+        myPlaybackSlider.setMaximum(song.getFrameCount());
 
         // Create labels for the beginning and end of the slider.
         Hashtable<Integer, JLabel> labelTable = new Hashtable<>();
@@ -386,7 +516,7 @@ public class MusicPlayerGUI extends JFrame {
         theLabelEnd.setForeground(TEXT_COLOR);
 
         labelTable.put(0, theLabelBeginning);
-        labelTable.put(song.getMp3File().getFrameCount(), theLabelEnd);
+        labelTable.put(song.getFrameCount(), theLabelEnd);
 
         myPlaybackSlider.setLabelTable(labelTable);
         myPlaybackSlider.setPaintLabels(true);
@@ -423,48 +553,111 @@ public class MusicPlayerGUI extends JFrame {
         return null;
     }
 
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!wasPainted) {
+            wasPainted = true;
+            logStartupTime("First paint");
+        }
+    }
+
+    // Prints how long it took from the start of the JVM to reach a startup milestone.
+    private static void logStartupTime(String milestone) {
+        long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println(milestone + " after " + millis + " ms");
+    }
+
     // Update the table with the current library
     private void updateTable() {
-        String[][] theTableData = myLibrary.toArray();
-        updateTable(theTableData);
-        currentSongList = theTableData;
+        showSongs(myLibrary.mySongLibrary);
+        isShowingLibrary = true;
         myMusicPlayer.loadPlaylist(myLibrary.mySongLibrary);
     }
 
 
     // Update the table with search results
     private void updateTable(boolean wasSearched) {
-        String[][] theTableData = myLibrary.toArray(wasSearched);
-        updateTable(theTableData);
-        currentSongList = theTableData;
+        showSongs(wasSearched ? myLibrary.updatedSongLibrary : myLibrary.mySongLibrary);
+        isShowingLibrary = !wasSearched;
     }
 
     // Update the table with a specific list of songs
     private void updateTable(ArrayList<Song> songList) {
+        showSongs(songList);
+        isShowingLibrary = false;
+    }
 
-        String[][] theTableData = new String[songList.size()][4];
-        for (int i = 0; i < songList.size(); i++) {theTableData[i][0] = i + 1 + "";
-            theTableData[i][1] = songList.get(i).getSongTitle();
-            theTableData[i][2] = songList.get(i).getSongArtist();
-            theTableData[i][3] = songList.get(i).getSongGenre();
+    // Appends up to the given number of further search results to the table.
+    private void loadMoreSearchResults(int thePageSize) {
+        int theFirstIndex = myLibrary.updatedSongLibrary.size();
+        if (myLibrary.loadMoreSearchResults(thePageSize) > 0) {
+            myTableModel.songsAdded(theFirstIndex, myLibrary.updatedSongLibrary.size() - 1);
         }
-        updateTable(theTableData);
-        currentSongList = theTableData;
+        isShowingSearchResults = myLibrary.hasMoreSearchResults();
     }
 
-    // Common method to update the JTable with given data
-    private void updateTable(String[][] theTableData) {
-        String[] theColumnNames = {"", "Title", "Artist", "Genre"};
+    // Common method to show a list of songs in the JTable; only the visible rows are read.
+    private void showSongs(List<Song> songList) {
+        isShowingSearchResults = false;
+        myTableModel.setSongs(songList);
+    }
 
-        // Create a new TableModel and update the JTable.
-        myLibraryTable.setModel(new javax.swing.table.DefaultTableModel(theTableData, theColumnNames) {
-            @Override
-            public boolean isCellEditable(int theRow, int column) {
-                return false;
+    // Forwards changes found while a loaded playlist is checked against its files, while the playlist is shown.
+    private class PlaylistTableUpdater implements LibraryListener {
+        private final List<Song> playlist;
+
+        private PlaylistTableUpdater(List<Song> playlist) {
+            this.playlist = playlist;
+        }
+
+        @Override
+        public void songsRemoved(int[] theIndices) {
+            if (myTableModel.getSongs() != playlist) return;
+
+            myTableModel.songsRemoved(theIndices);
+        }
+
+        @Override
+        public void songsUpdated(int[] theIndices) {
+            if (myTableModel.getSongs() != playlist) return;
+
+            myTableModel.songsUpdated(theIndices);
+        }
+
+        @Override
+        public void songsAdded(int theFirstIndex, int theLastIndex) {
+            if (myTableModel.getSongs() != playlist) return;
+
+            myTableModel.songsAdded(theFirstIndex, theLastIndex);
+        }
+    }
+
+    // Forwards library changes from the folder watcher to the table as row events, instead of rebuilding it.
+    private class LibraryTableUpdater implements LibraryListener {
+        @Override
+        public void songsRemoved(int[] theIndices) {
+            if (!isShowingLibrary) return;
+
+            myTableModel.songsRemoved(theIndices);
+        }
+
+        @Override
+        public void songsUpdated(int[] theIndices) {
+            if (!isShowingLibrary) return;
+
+            myTableModel.songsUpdated(theIndices);
+        }
+
+        @Override
+        public void songsAdded(int theFirstIndex, int theLastIndex) {
+            if (!wereSongsShown) {
+                wereSongsShown = true;
+                logStartupTime("First songs shown");
             }
-        });
+            if (!isShowingLibrary) return;
 
-        // Adjust column widths.
-        myLibraryTable.getColumnModel().getColumn(0).setPreferredWidth(5);
+            myTableModel.songsAdded(theFirstIndex, theLastIndex);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        PcmRingBuffer.java
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-capacity ring buffer of 16-bit PCM samples. Writes take as many samples as fit
+ * and reads return as many as are buffered, so neither ever blocks or allocates.
+ *
+ * The buffer is lock-free for one producer and one consumer: only the producer moves the
+ * write position and only the consumer moves the read position, each published with a
+ * release store after the samples are copied, so the other side never sees a position
+ * before the samples behind it. The producer and the consumer may be the same thread.
+ *
+ * @version 28 November 2024
+ */
+public class PcmRingBuffer {
+
+    private final short[] mySamples;
+
+    /**
+     * Total number of samples written and read; their difference is the number buffered.
+     */
+    private final AtomicLong myWritten = new AtomicLong();
+    private final AtomicLong myRead = new AtomicLong();
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param theCapacity the number of samples the buffer holds.
+     */
+    public PcmRingBuffer(int theCapacity) {
+        if (theCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + theCapacity);
+        }
+        mySamples = new short[theCapacity];
+    }
+
+    /**
+     * Returns the number of samples the buffer holds.
+     *
+     * @return the capacity in samples.
+     */
+    public int capacity() {
+        return mySamples.length;
+    }
+
+    /**
+     * Returns the number of samples buffered.
+     *
+     * @return the number of samples that can be read.
+     */
+    public int available() {
+        return (int) (myWritten.get() - myRead.get());
+    }
+
+    /**
+     * Returns the number of samples that can be written without overwriting unread ones.
+     *
+     * @return the free space in samples.
+     */
+    public int remaining() {
+        return mySamples.length - available();
+    }
+
+    /**
+     * Copies samples into the buffer, as many as fit. Called by the producer only.
+     *
+     * @param theSource the samples.
+     * @param theOffset the index of the first sample to copy.
+     * @param theLength the number of samples to copy.
+     * @return the number of samples copied.
+     */
+    public int write(short[] theSource, int theOffset, int theLength) {
+        long myPosition = myWritten.get();
+        int myCount = (int) Math.min(theLength, mySamples.length - (myPosition - myRead.get()));
+        int myStart = (int) (myPosition % mySamples.length);
+        int myFirstPart = Math.min(myCount, mySamples.length - myStart);
+        System.arraycopy(theSource, theOffset, mySamples, myStart, myFirstPart);
+        System.arraycopy(theSource, theOffset + myFirstPart, mySamples, 0, myCount - myFirstPart);
+        myWritten.lazySet(myPosition + myCount);
+        return myCount;
+    }
+
+    /**
+     * Copies buffered samples out of the buffer, as many as are available. Called by the
+     * consumer only.
+     *
+     * @param theTarget receives the samples.
+     * @param theOffset the index the first sample is copied to.
+     * @param theLength the maximum number of samples to copy.
+     * @return the number of samples copied.
+     */
+    public int read(short[] theTarget, int theOffset, int theLength) {
+        long myPosition = myRead.get();
+        int myCount = (int) Math.min(theLength, myWritten.get() - myPosition);
+        int myStart = (int) (myPosition % mySamples.length);
+        int myFirstPart = Math.min(myCount, mySamples.length - myStart);
+        System.arraycopy(mySamples, myStart, theTarget, theOffset, myFirstPart);
+        System.arraycopy(mySamples, 0, theTarget, theOffset + myFirstPart, myCount - myFirstPart);
+        myRead.lazySet(myPosition + myCount);
+        return myCount;
+    }
+
+    /**
+     * Discards every buffered sample. Called by the consumer only.
+     */
+    public void clear() {
+        myRead.lazySet(myWritten.get());
+    }
+}
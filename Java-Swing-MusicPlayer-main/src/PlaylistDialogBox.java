@@ -1,32 +1,35 @@
 import javax.swing.*;
-import javax.swing.event.TableModelEvent;
-import javax.swing.event.TableModelListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.List;
 
 public class PlaylistDialogBox extends JDialog {
 
     private final MusicPlayerGUI musicPlayerGUI;
 
-    // Store all of the paths to be written to a txt file (when we load a playlist)
+    // The songs that can be added to the playlist; a copy, so library changes while the dialog is open don't
+    // shift the rows.
     private ArrayList<Song> playlistLibrary;
     private PlaylistTableModel tableModel;
 
+    // Shows how many songs are checked.
+    private JLabel checkedCountLabel;
+
     public PlaylistDialogBox(ArrayList<Song> playlistLibrary, MusicPlayerGUI gui) {
         this.musicPlayerGUI = gui;
-        this.playlistLibrary = playlistLibrary;
+        this.playlistLibrary = new ArrayList<>(playlistLibrary);
 
         // Configure dialog
         setTitle("Create Playlist");
-        setSize(400, 400);
+        setSize(400, 480);
         setResizable(false);
         getContentPane().setBackground(MusicPlayerGUI.FRAME_COLOR);
         setLayout(null);
@@ -39,35 +42,66 @@ public class PlaylistDialogBox extends JDialog {
     private void addDialogComponents() {
         tableModel = new PlaylistTableModel(playlistLibrary);
         JTable playlistTable = new JTable(tableModel);
+        playlistTable.setSelectionMode(ListSelectionModel.SINGLE_INTERVAL_SELECTION); // Shift-click highlights a range
+
+        // Keep the count of checked songs up to date; counting the set bits is cheap even for large libraries.
+        tableModel.addTableModelListener(e -> updateCheckedCount());
 
-        // Add a TableModelListener to handle checkbox changes
-        tableModel.addTableModelListener(new TableModelListener() {
+        // Search box filtering the rows shown in the dialog
+        JTextField searchBox = new JTextField();
+        searchBox.setBounds(10, 10, 270, 25);
+        searchBox.setFont(new Font("Dialog", Font.PLAIN, 14));
+        searchBox.setToolTipText("Filter the songs by title, artist or genre");
+        searchBox.getDocument().addDocumentListener(new DocumentListener() {
             @Override
-            public void tableChanged(TableModelEvent e) {
-                // Handle changes to the checkbox state
-                int row = e.getFirstRow();
-                int column = e.getColumn();
-                if (column == 0) { // Checkbox column
-                    Boolean checked = (Boolean) tableModel.getValueAt(row, column);
-                    System.out.println("Row " + row + " checkbox is " + (checked ? "selected" : "deselected"));
-                }
+            public void insertUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchBox.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchBox.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                tableModel.setFilter(searchBox.getText());
             }
         });
+        add(searchBox);
+
+        checkedCountLabel = new JLabel();
+        checkedCountLabel.setBounds(290, 10, 100, 25);
+        checkedCountLabel.setForeground(MusicPlayerGUI.TEXT_COLOR);
+        checkedCountLabel.setFont(new Font("Dialog", Font.PLAIN, 12));
+        add(checkedCountLabel);
+        updateCheckedCount();
 
         // Wrap the table in a JScrollPane
         JScrollPane scrollPane = new JScrollPane(playlistTable);
-        scrollPane.setBounds((int) (getWidth() * 0.025), 10, (int) (getWidth() * 0.95), (int) (getHeight() * 0.75));
+        scrollPane.setBounds((int) (getWidth() * 0.025), 45, (int) (getWidth() * 0.95), 300);
         add(scrollPane);
 
+        // Buttons checking or unchecking many songs at once
+        addCheckButton("Check All", 10, e -> tableModel.checkAll(true));
+        addCheckButton("Clear", 104, e -> tableModel.checkAll(false));
+        addCheckButton("Check Shown", 198, e -> tableModel.checkShown(true));
+        addCheckButton("Check Rows", 292, e -> {
+            ListSelectionModel selection = playlistTable.getSelectionModel();
+            if (!selection.isSelectionEmpty()) {
+                tableModel.checkRows(selection.getMinSelectionIndex(), selection.getMaxSelectionIndex(), true);
+            }
+        });
+
         // Playlist name input field
         JTextField playlistNameBox = new JTextField("Playlist Name Here...");
-        playlistNameBox.setBounds(10, (int) (getHeight() * 0.80), 200, 25);
+        playlistNameBox.setBounds(10, 390, 200, 25);
         playlistNameBox.setFont(new Font("Dialog", Font.PLAIN, 14));
         add(playlistNameBox);
 
         // Save playlist button
         JButton savePlaylistButton = new JButton("Save");
-        savePlaylistButton.setBounds(215, (int) (getHeight() * 0.80), 100, 25);
+        savePlaylistButton.setBounds(215, 390, 100, 25);
         savePlaylistButton.setFont(new Font("Dialog", Font.BOLD, 14));
         savePlaylistButton.addActionListener(new ActionListener() {
             @Override
@@ -78,13 +112,21 @@ public class PlaylistDialogBox extends JDialog {
         add(savePlaylistButton);
     }
 
+    private void addCheckButton(String text, int x, ActionListener listener) {
+        JButton button = new JButton(text);
+        button.setBounds(x, 355, 90, 25);
+        button.setFont(new Font("Dialog", Font.PLAIN, 11));
+        button.setMargin(new Insets(0, 0, 0, 0));
+        button.addActionListener(listener);
+        add(button);
+    }
+
+    private void updateCheckedCount() {
+        checkedCountLabel.setText(tableModel.getCheckedCount() + " checked");
+    }
+
     private void savePlaylist(String playlistName) {
-        ArrayList<Song> selectedSongs = new ArrayList<>();
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            if (tableModel.isSelected(i)) {
-                selectedSongs.add(playlistLibrary.get(i));
-            }
-        }
+        List<Song> selectedSongs = tableModel.getCheckedSongs();
 
         if (selectedSongs.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No songs selected for the playlist.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -94,52 +136,81 @@ public class PlaylistDialogBox extends JDialog {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Playlist");
         fileChooser.setCurrentDirectory(new File("src/assets/playlist"));
-        fileChooser.setSelectedFile(new File(playlistName + ".txt")); // Default filename
+        fileChooser.setSelectedFile(new File(playlistName + "." + PlaylistFile.EXTENSION)); // Default filename
 
         int userSelection = fileChooser.showSaveDialog(this);
         if (userSelection == JFileChooser.APPROVE_OPTION) {
             File playlistFile = fileChooser.getSelectedFile();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(playlistFile))) {
-                for (Song song : selectedSongs) {
-                    writer.write(song.getFilePath());
-                    writer.newLine();
+
+            // Save as extended M3U so the playlist can be loaded without parsing its songs. Stamping a large
+            // playlist reads the attributes of every file, so it's written in the background.
+            Thread saver = new Thread(() -> {
+                try {
+                    PlaylistFile.write(playlistFile, selectedSongs);
+                } catch (IOException ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(musicPlayerGUI,
+                            "Error saving playlist: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
                 }
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this, "Error saving playlist: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            }, "playlist-save");
+            saver.start();
         }
     }
 }
 
+/**
+ * Table model of the playlist editor. Checked songs are kept in a BitSet indexed by song,
+ * so checking every song, a range of rows or every song matching the filter updates whole
+ * words at a time instead of one flag per row, and the checked songs are found by jumping
+ * from set bit to set bit.
+ *
+ * The search filter only changes which songs are shown; checked songs stay checked while
+ * hidden. A term that extends the previous term only rescans the songs the previous term
+ * matched.
+ */
 class PlaylistTableModel extends AbstractTableModel {
-    private ArrayList<Song> songs;
-    private ArrayList<Boolean> selected;
+    private final List<Song> songs;
+
+    // The checked songs, by index in songs.
+    private final BitSet checked = new BitSet();
+
+    // The songs matching the filter, and the index of the song shown in each row; both null while unfiltered.
+    private BitSet shown;
+    private int[] shownRows;
+
+    // Lower-cased title, artist and genre of each song, built on first use of the filter.
+    private String[] searchText;
+    private String filterTerm = "";
 
-    public PlaylistTableModel(ArrayList<Song> songs) {
+    public PlaylistTableModel(List<Song> songs) {
         this.songs = songs;
-        this.selected = new ArrayList<>(Collections.nCopies(songs.size(), false)); // Initially all unselected
+    }
+
+    // Returns the index in songs of the song shown in a row.
+    private int songIndex(int rowIndex) {
+        return shownRows == null ? rowIndex : shownRows[rowIndex];
     }
 
     @Override
     public int getRowCount() {
-        return songs.size();
+        return shownRows == null ? songs.size() : shownRows.length;
     }
 
     @Override
     public int getColumnCount() {
-        return 4; // Title, Artist, Genre, Checkbox
+        return 4; // Checkbox, Title, Artist, Genre
     }
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
+        int songIndex = songIndex(rowIndex);
         if (columnIndex == 0) {
-            return selected.get(rowIndex); // Checkbox value
+            return checked.get(songIndex); // Checkbox value
         } else if (columnIndex == 1) {
-            return songs.get(rowIndex).getSongTitle();
+            return songs.get(songIndex).getSongTitle();
         } else if (columnIndex == 2) {
-            return songs.get(rowIndex).getSongArtist();
+            return songs.get(songIndex).getSongArtist();
         } else {
-            return songs.get(rowIndex).getSongGenre();
+            return songs.get(songIndex).getSongGenre();
         }
     }
 
@@ -173,12 +244,104 @@ class PlaylistTableModel extends AbstractTableModel {
     @Override
     public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
         if (columnIndex == 0) {
-            selected.set(rowIndex, (Boolean) aValue);
+            checked.set(songIndex(rowIndex), (Boolean) aValue);
             fireTableCellUpdated(rowIndex, columnIndex);
         }
     }
 
     public boolean isSelected(int rowIndex) {
-        return selected.get(rowIndex);
+        return checked.get(songIndex(rowIndex));
     }
-}
\ No newline at end of file
+
+    // Checks or unchecks every song, shown or not.
+    public void checkAll(boolean value) {
+        if (value) {
+            checked.set(0, songs.size());
+        } else {
+            checked.clear();
+        }
+        fireCheckboxesChanged();
+    }
+
+    // Checks or unchecks every song matching the filter.
+    public void checkShown(boolean value) {
+        if (shown == null) {
+            checkAll(value);
+            return;
+        }
+        if (value) {
+            checked.or(shown);
+        } else {
+            checked.andNot(shown);
+        }
+        fireCheckboxesChanged();
+    }
+
+    // Checks or unchecks the songs shown in a range of rows, inclusive.
+    public void checkRows(int firstRow, int lastRow, boolean value) {
+        if (shownRows == null) {
+            checked.set(firstRow, lastRow + 1, value);
+        } else {
+            for (int row = firstRow; row <= lastRow; row++) {
+                checked.set(shownRows[row], value);
+            }
+        }
+        fireCheckboxesChanged();
+    }
+
+    public int getCheckedCount() {
+        return checked.cardinality();
+    }
+
+    // Returns the checked songs in library order.
+    public List<Song> getCheckedSongs() {
+        List<Song> result = new ArrayList<>(checked.cardinality());
+        for (int i = checked.nextSetBit(0); i >= 0; i = checked.nextSetBit(i + 1)) {
+            result.add(songs.get(i));
+        }
+        return result;
+    }
+
+    // Shows only the songs whose title, artist or genre contains the term; an empty term shows every song.
+    public void setFilter(String term) {
+        String lowerCaseTerm = term.trim().toLowerCase();
+        if (lowerCaseTerm.isEmpty()) {
+            shown = null;
+            shownRows = null;
+        } else {
+            if (searchText == null) {
+                searchText = new String[songs.size()];
+                for (int i = 0; i < songs.size(); i++) {
+                    Song song = songs.get(i);
+                    searchText[i] = (song.getSongTitle() + "\n" + song.getSongArtist() + "\n"
+                            + song.getSongGenre()).toLowerCase();
+                }
+            }
+
+            // Every match of a longer term is a match of the term it contains, so only those need checking.
+            BitSet candidates = shown != null && lowerCaseTerm.contains(filterTerm) ? shown : null;
+            BitSet matches = new BitSet(songs.size());
+            if (candidates != null) {
+                for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                    if (searchText[i].contains(lowerCaseTerm)) matches.set(i);
+                }
+            } else {
+                for (int i = 0; i < searchText.length; i++) {
+                    if (searchText[i].contains(lowerCaseTerm)) matches.set(i);
+                }
+            }
+
+            shown = matches;
+            shownRows = matches.stream().toArray();
+        }
+        filterTerm = lowerCaseTerm;
+        fireTableDataChanged();
+    }
+
+    // Repaints the checkbox column without rebuilding the table.
+    private void fireCheckboxesChanged() {
+        if (getRowCount() > 0) {
+            fireTableRowsUpdated(0, getRowCount() - 1);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        PlaylistFile.java
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads and writes playlist files. Playlists are saved as extended M3U (UTF-8, .m3u8):
+ * every entry carries its title and duration in an #EXTINF line, its artist and genre
+ * in #EXTART and #EXTGENRE lines, and the size and modification time of the file plus
+ * its exact timing in an #EXTSTAMP line. Paths are written relative to the folder of
+ * the playlist whenever possible, with forward slashes.
+ *
+ * A playlist can therefore be loaded without opening a single MP3 file: entries are
+ * built from the saved metadata and checked against their files later with
+ * {@link #findChanges(List, List)}. Plain text playlists of one path per line, as
+ * written by earlier versions, are still read; their entries are parsed.
+ *
+ * @version 28 November 2024
+ */
+public class PlaylistFile {
+
+    /**
+     * The extension of playlists written by {@link #write(File, List)}.
+     */
+    public static final String EXTENSION = "m3u8";
+
+    private static final String HEADER = "#EXTM3U";
+    private static final String INFO = "#EXTINF:";
+    private static final String ARTIST = "#EXTART:";
+    private static final String GENRE = "#EXTGENRE:";
+    private static final String STAMP = "#EXTSTAMP:";
+
+    /**
+     * Size of the write buffers, in bytes or chars.
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The songs of the playlist, in order.
+     */
+    private final ArrayList<Song> mySongs = new ArrayList<>();
+
+    /**
+     * The songs built from saved metadata, with the file size and modification time the
+     * metadata was saved for.
+     */
+    private final List<Song> myUnverified = new ArrayList<>();
+    private final List<long[]> myStamps = new ArrayList<>();
+
+    private PlaylistFile() {
+    }
+
+    /**
+     * Reads a playlist. Songs already known to the {@link SongRegistry} are reused, entries
+     * with saved metadata are built from it, and only the remaining files are parsed.
+     * Missing files are kept so the caller can decide what to do with them.
+     *
+     * @param theFile the playlist file, extended M3U or one path per line.
+     * @return the playlist.
+     * @throws IOException if the playlist cannot be read.
+     */
+    public static PlaylistFile read(File theFile) throws IOException {
+        return read(theFile, Integer.MAX_VALUE, theSongs -> { });
+    }
+
+    /**
+     * Reads a playlist like {@link #read(File)}, but hands the songs over while the rest of
+     * the file is still being read: the first song on its own, so playback can start right
+     * away, then batches of the given size.
+     *
+     * @param theFile the playlist file, extended M3U or one path per line.
+     * @param theBatchSize the number of songs per batch after the first song.
+     * @param theConsumer receives the batches in playlist order, on the calling thread.
+     * @return the playlist.
+     * @throws IOException if the playlist cannot be read.
+     */
+    public static PlaylistFile read(File theFile, int theBatchSize, Consumer<List<Song>> theConsumer)
+            throws IOException {
+        PlaylistFile myPlaylist = new PlaylistFile();
+        int myHandedOver = 0;
+        File myFolder = theFile.getAbsoluteFile().getParentFile();
+
+        try (BufferedReader myReader = Files.newBufferedReader(theFile.toPath(), StandardCharsets.UTF_8)) {
+            boolean isExtended = false;
+            String myTitle = null;
+            String myArtist = null;
+            String myGenre = null;
+            long[] myStamp = null;
+
+            String myLine;
+            boolean isFirstLine = true;
+            while ((myLine = myReader.readLine()) != null) {
+                if (isFirstLine && myLine.startsWith("\uFEFF")) {
+                    myLine = myLine.substring(1); // Byte order mark.
+                }
+                myLine = myLine.trim();
+                if (isFirstLine) {
+                    isFirstLine = false;
+                    if (myLine.equals(HEADER)) {
+                        isExtended = true;
+                        continue;
+                    }
+                }
+
+                if (myLine.isEmpty()) {
+                    continue;
+                }
+                if (myLine.startsWith(INFO)) {
+                    int myComma = myLine.indexOf(',');
+                    myTitle = myComma >= 0 ? myLine.substring(myComma + 1) : null;
+                } else if (myLine.startsWith(ARTIST)) {
+                    myArtist = myLine.substring(ARTIST.length());
+                } else if (myLine.startsWith(GENRE)) {
+                    myGenre = myLine.substring(GENRE.length());
+                } else if (myLine.startsWith(STAMP)) {
+                    myStamp = parseStamp(myLine.substring(STAMP.length()));
+                } else if (isExtended && myLine.startsWith("#")) {
+                    continue; // Other extended M3U tags and comments.
+                } else {
+                    // Relative paths of earlier playlists are relative to the working folder.
+                    String myPath = resolve(myLine, isExtended ? myFolder : null);
+                    myPlaylist.add(myPath, myTitle, myArtist, myGenre, myStamp);
+                    myTitle = null;
+                    myArtist = null;
+                    myGenre = null;
+                    myStamp = null;
+
+                    int mySize = myPlaylist.mySongs.size();
+                    if (myHandedOver == 0 || mySize - myHandedOver >= theBatchSize) {
+                        theConsumer.accept(new ArrayList<>(myPlaylist.mySongs.subList(myHandedOver, mySize)));
+                        myHandedOver = mySize;
+                    }
+                }
+            }
+        }
+        if (myHandedOver < myPlaylist.mySongs.size()) {
+            theConsumer.accept(new ArrayList<>(
+                    myPlaylist.mySongs.subList(myHandedOver, myPlaylist.mySongs.size())));
+        }
+        return myPlaylist;
+    }
+
+    private void add(String thePath, String theTitle, String theArtist, String theGenre, long[] theStamp) {
+        Song mySong = SongRegistry.find(thePath);
+        if (mySong == null && theTitle != null && theStamp != null) {
+            mySong = SongRegistry.putIfAbsent(new Song(thePath, theTitle,
+                    theArtist != null ? theArtist : "N/A", theGenre != null ? theGenre : "N/A",
+                    (int) theStamp[2], theStamp[3]));
+            myUnverified.add(mySong);
+            myStamps.add(theStamp);
+        } else if (mySong == null) {
+            mySong = SongRegistry.get(thePath);
+        }
+        mySongs.add(mySong);
+    }
+
+    /**
+     * Parses "size,lastModified,frameCount,lengthInMilliseconds", or returns null.
+     */
+    private static long[] parseStamp(String theValue) {
+        String[] myParts = theValue.split(",");
+        if (myParts.length != 4) {
+            return null;
+        }
+        try {
+            long[] myStamp = new long[4];
+            for (int i = 0; i < 4; i++) {
+                myStamp[i] = Long.parseLong(myParts[i].trim());
+            }
+            return myStamp;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Turns a playlist entry into a file path. Backslashes written on Windows are
+     * converted, and relative paths are resolved against the given folder, or left
+     * relative to the working folder if it is null.
+     */
+    private static String resolve(String theEntry, File theFolder) {
+        String myEntry = theEntry.replace('\\', '/').replace('/', File.separatorChar);
+        File myFile = new File(myEntry);
+        if (myFile.isAbsolute() || theFolder == null) {
+            return myFile.getPath();
+        }
+        return new File(theFolder, myEntry).toPath().normalize().toString();
+    }
+
+    /**
+     * Returns the songs of the playlist.
+     *
+     * @return the songs, in playlist order.
+     */
+    public ArrayList<Song> getSongs() {
+        return mySongs;
+    }
+
+    /**
+     * Checks the songs built from saved metadata against their files, which reads the
+     * size and modification time of each file but none of its contents. Files that
+     * changed are parsed again and registered; may be called from a background thread.
+     *
+     * @param theChangedSongs receives freshly parsed songs for files that changed.
+     * @param theRemovedPaths receives the absolute paths of files that no longer exist.
+     */
+    public void findChanges(List<Song> theChangedSongs, List<String> theRemovedPaths) {
+        for (int i = 0; i < myUnverified.size(); i++) {
+            Song mySong = myUnverified.get(i);
+            long[] myStamp = myStamps.get(i);
+            File myFile = new File(mySong.getFilePath());
+            if (!myFile.isFile()) {
+                theRemovedPaths.add(myFile.getAbsolutePath());
+            } else if (myFile.length() != myStamp[0] || myFile.lastModified() != myStamp[1]) {
+                theChangedSongs.add(SongRegistry.put(new Song(mySong.getFilePath())));
+            }
+        }
+    }
+
+    /**
+     * Writes the songs as an extended M3U playlist. The playlist is written through a
+     * buffered channel to a temporary file next to it, which then replaces the playlist
+     * in one atomic rename, so a failed save never leaves a half-written playlist behind.
+     *
+     * @param theFile the playlist file to write.
+     * @param theSongs the songs, in playlist order.
+     * @throws IOException if the playlist cannot be written.
+     */
+    public static void write(File theFile, List<Song> theSongs) throws IOException {
+        Path myTarget = theFile.getAbsoluteFile().toPath().normalize();
+        Path myTempFile = myTarget.resolveSibling(myTarget.getFileName() + ".tmp");
+
+        try (FileChannel myChannel = FileChannel.open(myTempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             BufferedWriter myWriter = new BufferedWriter(
+                     Channels.newWriter(myChannel, StandardCharsets.UTF_8.newEncoder(), WRITE_BUFFER_SIZE),
+                     WRITE_BUFFER_SIZE)) {
+            writeEntries(myWriter, myTarget.getParent(), theSongs);
+            myWriter.flush();
+            myChannel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(myTempFile);
+            throw e;
+        }
+
+        try {
+            Files.move(myTempFile, myTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(myTempFile);
+            throw e;
+        }
+    }
+
+    private static void writeEntries(BufferedWriter theWriter, Path theFolder, List<Song> theSongs)
+            throws IOException {
+        theWriter.write(HEADER);
+        theWriter.newLine();
+        for (Song mySong : theSongs) {
+            File mySongFile = new File(mySong.getFilePath());
+
+            // Songs whose tags could not be read are written as a bare path and parsed on load.
+            if (mySong.getSongTitle() != null) {
+                // Only save the timing if it is known; never read the file just for the playlist.
+                boolean isTimed = mySong.isTimingLoaded() && mySong.getFrameCount() > 0;
+                long myLength = isTimed ? mySong.getLengthInMilliseconds() : -1;
+                theWriter.write(INFO + (isTimed ? (myLength + 500) / 1000 : -1) + ","
+                        + oneLine(mySong.getSongTitle()));
+                theWriter.newLine();
+                theWriter.write(ARTIST + oneLine(mySong.getSongArtist()));
+                theWriter.newLine();
+                theWriter.write(GENRE + oneLine(mySong.getSongGenre()));
+                theWriter.newLine();
+                theWriter.write(STAMP + stampOf(mySongFile) + ","
+                        + (isTimed ? mySong.getFrameCount() : -1) + "," + myLength);
+                theWriter.newLine();
+            }
+            theWriter.write(relativize(theFolder, mySongFile));
+            theWriter.newLine();
+        }
+    }
+
+    /**
+     * Returns "size,lastModified" of a file, read with a single call, or "-1,-1" if the
+     * file cannot be read so the entry is checked again on load.
+     */
+    private static String stampOf(File theFile) {
+        try {
+            BasicFileAttributes myAttributes = Files.readAttributes(theFile.toPath(), BasicFileAttributes.class);
+            return myAttributes.size() + "," + myAttributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return "-1,-1";
+        }
+    }
+
+    /**
+     * Replaces line breaks in a tag value, which would end the tag line early.
+     */
+    private static String oneLine(String theValue) {
+        return theValue.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Returns the path of a file relative to a folder with forward slashes, or its
+     * absolute path if it is on a different drive.
+     */
+    private static String relativize(Path theFolder, File theFile) {
+        Path myPath = theFile.getAbsoluteFile().toPath().normalize();
+        if (theFolder == null || !myPath.getRoot().equals(theFolder.getRoot())) {
+            return myPath.toString();
+        }
+        return theFolder.relativize(myPath).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        RankedResults.java
+ */
+
+import java.util.Arrays;
+
+/**
+ * The matches of one search, ranked lazily. Each match is a score and a store row packed
+ * into a long, so ranking compares primitives and never looks anything up.
+ *
+ * Matches are ranked by score, highest first. Matches with equal scores are ranked by row
+ * id, lowest first, which is the order the songs were added to the library; the order is
+ * therefore the same every time the same library is searched.
+ *
+ * Pages are ranked on demand: the best k matches are selected with a bounded heap in
+ * O(n log k), so showing the first page of a search matching most of the library does
+ * not sort the whole result. The ranked prefix is kept, and the next page only selects
+ * among the matches ranked below it.
+ *
+ * @version 28 November 2024
+ */
+public class RankedResults {
+
+    /**
+     * The unranked matches.
+     */
+    private final long[] myMatches;
+
+    /**
+     * The best matches found so far, in rank order.
+     */
+    private long[] myRanked = new long[0];
+
+    /**
+     * Constructs results from packed matches, as produced by {@link #pack(int, int)}.
+     *
+     * @param theMatches the packed matches, in any order. The array is kept.
+     */
+    public RankedResults(long[] theMatches) {
+        myMatches = theMatches;
+    }
+
+    /**
+     * Packs a score and a row so that ascending long order is rank order.
+     *
+     * @param theScore the score, at least zero.
+     * @param theRow the row id.
+     * @return the packed match.
+     */
+    public static long pack(int theScore, int theRow) {
+        return ((long) (Integer.MAX_VALUE - theScore) << 32) | theRow;
+    }
+
+    /**
+     * Returns the number of matches.
+     *
+     * @return the number of matches.
+     */
+    public int size() {
+        return myMatches.length;
+    }
+
+    /**
+     * Returns the rows of all matches, in no particular order.
+     *
+     * @return the matching rows.
+     */
+    public int[] rows() {
+        int[] myResult = new int[myMatches.length];
+        for (int i = 0; i < myMatches.length; i++) {
+            myResult[i] = (int) myMatches[i];
+        }
+        return myResult;
+    }
+
+    /**
+     * Returns the rows of a page of matches in rank order.
+     *
+     * @param theOffset the rank of the first match on the page.
+     * @param theCount the maximum number of matches on the page.
+     * @return the rows, fewer than theCount at the end of the results.
+     */
+    public int[] page(int theOffset, int theCount) {
+        int myEnd = (int) Math.min(myMatches.length, (long) theOffset + theCount);
+        if (theOffset >= myEnd) {
+            return new int[0];
+        }
+        rank(myEnd);
+
+        int[] myResult = new int[myEnd - theOffset];
+        for (int i = theOffset; i < myEnd; i++) {
+            myResult[i - theOffset] = (int) myRanked[i];
+        }
+        return myResult;
+    }
+
+    /**
+     * Makes sure at least the best theCount matches are ranked.
+     */
+    private void rank(int theCount) {
+        if (theCount <= myRanked.length) {
+            return;
+        }
+
+        // Ranking most of the matches: a full sort is cheaper than a heap.
+        if (theCount > myMatches.length / 2) {
+            myRanked = myMatches.clone();
+            Arrays.sort(myRanked);
+            return;
+        }
+
+        // Matches up to the last ranked one are ranked already (keys are unique, since
+        // rows are). Keep the best of the rest in a max-heap whose root is the worst.
+        int myRankedCount = myRanked.length;
+        long myLastRanked = myRankedCount > 0 ? myRanked[myRankedCount - 1] : Long.MIN_VALUE;
+        int myNeeded = theCount - myRankedCount;
+        long[] myHeap = new long[myNeeded];
+        int mySize = 0;
+        for (long myMatch : myMatches) {
+            if (myMatch <= myLastRanked) {
+                continue;
+            }
+            if (mySize < myNeeded) {
+                myHeap[mySize] = myMatch;
+                siftUp(myHeap, mySize++);
+            } else if (myMatch < myHeap[0]) {
+                myHeap[0] = myMatch;
+                siftDown(myHeap, myNeeded);
+            }
+        }
+        Arrays.sort(myHeap);
+
+        long[] myExtended = Arrays.copyOf(myRanked, theCount);
+        System.arraycopy(myHeap, 0, myExtended, myRankedCount, myNeeded);
+        myRanked = myExtended;
+    }
+
+    private static void siftUp(long[] theHeap, int theIndex) {
+        long myValue = theHeap[theIndex];
+        while (theIndex > 0) {
+            int myParent = (theIndex - 1) >>> 1;
+            if (theHeap[myParent] >= myValue) {
+                break;
+            }
+            theHeap[theIndex] = theHeap[myParent];
+            theIndex = myParent;
+        }
+        theHeap[theIndex] = myValue;
+    }
+
+    private static void siftDown(long[] theHeap, int theSize) {
+        long myValue = theHeap[0];
+        int myIndex = 0;
+        while (true) {
+            int myChild = 2 * myIndex + 1;
+            if (myChild >= theSize) {
+                break;
+            }
+            if (myChild + 1 < theSize && theHeap[myChild + 1] > theHeap[myChild]) {
+                myChild++;
+            }
+            if (theHeap[myChild] <= myValue) {
+                break;
+            }
+            theHeap[myIndex] = theHeap[myChild];
+            myIndex = myChild;
+        }
+        theHeap[myIndex] = myValue;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        SearchIndex.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Search index over the rows of a LibraryStore. Titles are indexed by trigram: every
+ * three-character substring of the lower-cased title maps to the rows containing it,
+ * so a query only has to check the rows listed under its rarest trigram. Artists and
+ * genres repeat across many songs, so their distinct values are indexed the same way
+ * and a matching value is expanded to its rows through a per-value row list. Terms
+ * shorter than three characters fall back to scanning the lower-cased columns.
+ *
+ * Scoring is the same as the original linear search: a title match scores 100 (+50 if
+ * the title starts with the term), an artist match 75 (+25 if it starts with the term),
+ * and a genre match 50. Queries return {@link RankedResults}, which rank the matches by
+ * score and then by row id only as far as they are read.
+ *
+ * The index is updated incrementally with {@link #add(int)}; removed or replaced rows
+ * are filtered out when a query verifies its candidates. Like the store, the index is
+ * not thread-safe. A query running on an interrupted thread stops early by throwing a
+ * CancellationException, so a search for an outdated term can be abandoned. A query also
+ * stops early when the index's yield condition holds, so that the caller can release
+ * the lock guarding the index to a writer.
+ *
+ * @version 28 November 2024
+ */
+public class SearchIndex {
+
+    /**
+     * How many candidates are checked between polls for interruption.
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    /**
+     * Growable list of row ids or dictionary codes.
+     */
+    private static final class IntList {
+        private int[] myValues = new int[4];
+        private int mySize;
+
+        void add(int theValue) {
+            if (mySize == myValues.length) {
+                myValues = Arrays.copyOf(myValues, mySize * 2);
+            }
+            myValues[mySize++] = theValue;
+        }
+    }
+
+    /**
+     * Maps every trigram of a set of lower-cased strings to the ids of the strings
+     * containing it. Each trigram is packed into a long, one char per 16 bits.
+     */
+    private static final class GramIndex {
+        private final Map<Long, IntList> myGrams = new HashMap<>();
+
+        void add(String theText, int theId) {
+            for (int i = 0; i + 3 <= theText.length(); i++) {
+                IntList myIds = myGrams.computeIfAbsent(gram(theText, i), theKey -> new IntList());
+                // A gram repeated within the text is listed once.
+                if (myIds.mySize == 0 || myIds.myValues[myIds.mySize - 1] != theId) {
+                    myIds.add(theId);
+                }
+            }
+        }
+
+        /**
+         * Returns the shortest id list among the trigrams of a term of at least three
+         * characters, or null if one of its trigrams never occurs. Every string containing
+         * the term is in the returned list.
+         */
+        IntList rarest(String theTerm) {
+            IntList myRarest = null;
+            for (int i = 0; i + 3 <= theTerm.length(); i++) {
+                IntList myIds = myGrams.get(gram(theTerm, i));
+                if (myIds == null) {
+                    return null;
+                }
+                if (myRarest == null || myIds.mySize < myRarest.mySize) {
+                    myRarest = myIds;
+                }
+            }
+            return myRarest;
+        }
+
+        private static long gram(String theText, int theIndex) {
+            return ((long) theText.charAt(theIndex) << 32) | ((long) theText.charAt(theIndex + 1) << 16)
+                    | theText.charAt(theIndex + 2);
+        }
+    }
+
+    private final LibraryStore myStore;
+
+    /**
+     * Checked together with interruption; a query stops while it holds.
+     */
+    private final BooleanSupplier myYield;
+
+    /**
+     * Rows by title trigram, and artist and genre codes by trigram of their value.
+     */
+    private final GramIndex myTitleGrams = new GramIndex();
+    private final GramIndex myArtistGrams = new GramIndex();
+    private final GramIndex myGenreGrams = new GramIndex();
+
+    /**
+     * Lower-cased title per row.
+     */
+    private String[] myTitles = new String[16];
+
+    /**
+     * Lower-cased artist and genre per dictionary code.
+     */
+    private final List<String> myArtists = new ArrayList<>();
+    private final List<String> myGenres = new ArrayList<>();
+
+    /**
+     * Rows per artist and genre code.
+     */
+    private final List<IntList> myArtistRows = new ArrayList<>();
+    private final List<IntList> myGenreRows = new ArrayList<>();
+
+    /**
+     * Marks rows already scored by the current query; a row is visited when its stamp
+     * equals the query's stamp, so the array never needs clearing.
+     */
+    private int[] myVisited = new int[16];
+    private int myStamp;
+
+    /**
+     * Matches of the current query, packed with {@link RankedResults#pack(int, int)}.
+     */
+    private long[] myMatches = new long[16];
+    private int myMatchCount;
+
+    /**
+     * Candidates checked by the current query, used to poll for interruption.
+     */
+    private int myCheckedCount;
+
+    /**
+     * Constructs an empty index over the given store.
+     *
+     * @param theStore the store whose rows are indexed.
+     */
+    public SearchIndex(LibraryStore theStore) {
+        this(theStore, () -> false);
+    }
+
+    /**
+     * Constructs an empty index over the given store whose queries stop early with a
+     * CancellationException while a condition holds.
+     *
+     * @param theStore the store whose rows are indexed.
+     * @param theYield polled during queries; a query stops once it returns true.
+     */
+    public SearchIndex(LibraryStore theStore, BooleanSupplier theYield) {
+        myStore = theStore;
+        myYield = theYield;
+    }
+
+    /**
+     * Indexes the current contents of a row. Call after a row is added or replaced.
+     *
+     * @param theRow the row id.
+     */
+    public void add(int theRow) {
+        if (theRow >= myTitles.length) {
+            int myCapacity = Math.max(theRow + 1, myTitles.length * 2);
+            myTitles = Arrays.copyOf(myTitles, myCapacity);
+            myVisited = Arrays.copyOf(myVisited, myCapacity);
+        }
+
+        String myTitle = myStore.getTitle(theRow).toLowerCase();
+        myTitles[theRow] = myTitle;
+        myTitleGrams.add(myTitle, theRow);
+
+        indexCode(theRow, myStore.getArtistCode(theRow), myStore.getArtist(theRow),
+                myArtists, myArtistGrams, myArtistRows);
+        indexCode(theRow, myStore.getGenreCode(theRow), myStore.getGenre(theRow),
+                myGenres, myGenreGrams, myGenreRows);
+    }
+
+    private static void indexCode(int theRow, int theCode, String theValue, List<String> theValues,
+                                  GramIndex theGrams, List<IntList> theRows) {
+        while (theValues.size() <= theCode) {
+            theValues.add(null);
+            theRows.add(new IntList());
+        }
+        if (theValues.get(theCode) == null) {
+            String myValue = theValue.toLowerCase();
+            theValues.set(theCode, myValue);
+            theGrams.add(myValue, theCode);
+        }
+        theRows.get(theCode).add(theRow);
+    }
+
+    /**
+     * Searches every row of the store.
+     *
+     * @param theTerm the search term.
+     * @return the matches, ranked on demand.
+     */
+    public RankedResults search(String theTerm) {
+        String myTerm = theTerm.toLowerCase();
+        startQuery();
+
+        // Title candidates: the rows under the rarest trigram, or every row for short terms.
+        if (myTerm.length() < 3) {
+            for (int myRow = 0; myRow < myStore.size(); myRow++) {
+                collect(myRow, myTerm);
+            }
+        } else {
+            IntList myCandidates = myTitleGrams.rarest(myTerm);
+            if (myCandidates != null) {
+                for (int i = 0; i < myCandidates.mySize; i++) {
+                    collect(myCandidates.myValues[i], myTerm);
+                }
+            }
+        }
+
+        // Artist and genre candidates: every row of each matching distinct value.
+        collectCodes(myArtists, myArtistGrams, myArtistRows, myTerm);
+        collectCodes(myGenres, myGenreGrams, myGenreRows, myTerm);
+        return results();
+    }
+
+    /**
+     * Searches only the given rows, e.g. the results of a shorter term.
+     *
+     * @param theTerm the search term.
+     * @param theCandidates the rows to consider.
+     * @return the matches, ranked on demand.
+     */
+    public RankedResults search(String theTerm, int[] theCandidates) {
+        String myTerm = theTerm.toLowerCase();
+        startQuery();
+        for (int myRow : theCandidates) {
+            collect(myRow, myTerm);
+        }
+        return results();
+    }
+
+    /**
+     * Collects the rows of every artist or genre value containing the term. Values are
+     * looked up by trigram, or scanned for terms shorter than three characters.
+     */
+    private void collectCodes(List<String> theValues, GramIndex theGrams, List<IntList> theRows, String theTerm) {
+        if (theTerm.length() < 3) {
+            for (int myCode = 0; myCode < theValues.size(); myCode++) {
+                collectCode(theValues, theRows, myCode, theTerm);
+            }
+        } else {
+            IntList myCodes = theGrams.rarest(theTerm);
+            for (int i = 0; myCodes != null && i < myCodes.mySize; i++) {
+                collectCode(theValues, theRows, myCodes.myValues[i], theTerm);
+            }
+        }
+    }
+
+    private void collectCode(List<String> theValues, List<IntList> theRows, int theCode, String theTerm) {
+        String myValue = theValues.get(theCode);
+        if (myValue == null || !myValue.contains(theTerm)) {
+            return;
+        }
+        IntList myRows = theRows.get(theCode);
+        for (int i = 0; i < myRows.mySize; i++) {
+            collect(myRows.myValues[i], theTerm);
+        }
+    }
+
+    /**
+     * Scores a candidate row once per query and keeps it if it matches.
+     */
+    private void collect(int theRow, String theTerm) {
+        if (++myCheckedCount % CANCEL_CHECK_INTERVAL == 0) {
+            checkCancelled();
+        }
+        if (myVisited[theRow] == myStamp || myStore.isRemoved(theRow)) {
+            return;
+        }
+        myVisited[theRow] = myStamp;
+
+        int myScore = score(theRow, theTerm);
+        if (myScore == 0) {
+            return;
+        }
+        if (myMatchCount == myMatches.length) {
+            myMatches = Arrays.copyOf(myMatches, myMatchCount * 2);
+        }
+        myMatches[myMatchCount++] = RankedResults.pack(myScore, theRow);
+    }
+
+    /**
+     * Scores a row against a lower-cased term.
+     *
+     * @param theRow the row id.
+     * @param theTerm the lower-cased search term.
+     * @return the score, zero if the row does not match.
+     */
+    public int score(int theRow, String theTerm) {
+        int myScore = 0;
+
+        String myTitle = myTitles[theRow];
+        if (myTitle.contains(theTerm)) {
+            myScore += myTitle.startsWith(theTerm) ? 150 : 100;
+        }
+
+        String myArtist = myArtists.get(myStore.getArtistCode(theRow));
+        if (myArtist.contains(theTerm)) {
+            myScore += myArtist.startsWith(theTerm) ? 100 : 75;
+        }
+
+        if (myGenres.get(myStore.getGenreCode(theRow)).contains(theTerm)) {
+            myScore += 50;
+        }
+        return myScore;
+    }
+
+    private RankedResults results() {
+        checkCancelled();
+        return new RankedResults(Arrays.copyOf(myMatches, myMatchCount));
+    }
+
+    private void checkCancelled() {
+        if (Thread.currentThread().isInterrupted() || myYield.getAsBoolean()) {
+            throw new CancellationException("Search was cancelled");
+        }
+    }
+
+    private void startQuery() {
+        if (++myStamp == 0) {
+            Arrays.fill(myVisited, 0);
+            myStamp = 1;
+        }
+        myMatchCount = 0;
+        myCheckedCount = 0;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        SeekIndex.java
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Byte offsets of every N-th MPEG audio frame of an MP3 file, so playback can start at
+ * any frame by jumping close to it instead of reading every earlier frame. Frames are
+ * numbered like JLayer's Bitstream numbers them: frame 0 is the first frame after the
+ * ID3v2 tag, including a Xing/Info frame.
+ *
+ * An index is immutable. It is built by {@link Mp3HeaderReader#readSeekIndex(java.io.File, int)}
+ * and stored with the rest of a song's metadata in the {@link MetadataCache}.
+ *
+ * @version 28 November 2024
+ */
+public final class SeekIndex {
+
+    /**
+     * Number of frames between two entries by default; about 1.7 seconds at 44.1 kHz,
+     * or 16 bytes per minute of audio.
+     */
+    public static final int DEFAULT_INTERVAL = 64;
+
+    /**
+     * Number of frames between two entries.
+     */
+    private final int myInterval;
+
+    /**
+     * The byte offset of frame i * myInterval, for every entry.
+     */
+    private final long[] myOffsets;
+
+    /**
+     * Constructs an index.
+     *
+     * @param theInterval the number of frames between two entries.
+     * @param theOffsets the byte offset of every theInterval-th frame, starting at frame 0.
+     */
+    public SeekIndex(int theInterval, long[] theOffsets) {
+        if (theInterval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + theInterval);
+        }
+        myInterval = theInterval;
+        myOffsets = theOffsets;
+    }
+
+    /**
+     * Returns the number of frames between two entries.
+     *
+     * @return the interval in frames.
+     */
+    public int getInterval() {
+        return myInterval;
+    }
+
+    /**
+     * Returns the indexed frame at or before a frame, i.e. the frame reading should start
+     * at to reach it.
+     *
+     * @param theFrame the frame to reach.
+     * @return the nearest indexed frame not after it.
+     */
+    public int entryFrameFor(int theFrame) {
+        return entryOf(theFrame) * myInterval;
+    }
+
+    /**
+     * Returns the byte offset of the indexed frame at or before a frame.
+     *
+     * @param theFrame the frame to reach.
+     * @return the offset of {@link #entryFrameFor(int)} in the file.
+     */
+    public long offsetFor(int theFrame) {
+        return myOffsets[entryOf(theFrame)];
+    }
+
+    private int entryOf(int theFrame) {
+        return Math.max(0, Math.min(theFrame / myInterval, myOffsets.length - 1));
+    }
+
+    /**
+     * Writes the index; the offsets are written as differences, which fit in an int.
+     *
+     * @param theOutput the stream to write to.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void writeTo(DataOutputStream theOutput) throws IOException {
+        theOutput.writeInt(myInterval);
+        theOutput.writeInt(myOffsets.length);
+        long myPrevious = 0;
+        for (long myOffset : myOffsets) {
+            theOutput.writeInt((int) (myOffset - myPrevious));
+            myPrevious = myOffset;
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @param theInput the stream to read from.
+     * @return the index.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static SeekIndex readFrom(DataInputStream theInput) throws IOException {
+        int myInterval = theInput.readInt();
+        long[] myOffsets = new long[theInput.readInt()];
+        long myOffset = 0;
+        for (int i = 0; i < myOffsets.length; i++) {
+            myOffset += theInput.readInt();
+            myOffsets[i] = myOffset;
+        }
+        return new SeekIndex(myInterval, myOffsets);
+    }
+}
@@ -15,95 +15,185 @@ import org.jaudiotagger.audio.AudioFileIO;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 
-import javax.swing.*;
 import java.io.File;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents an MP3 song with metadata including title, artist, genre, and length.
- * Provides methods for retrieving song details and file information.
+ * Provides methods for retrieving song details and file information. The tags are
+ * read when the song is created; the frame count and length are read lazily, since
+ * only the song that is playing needs them.
+ *
+ * Songs are kept small because the library holds one per file: metadata is stored in
+ * plain fields, artist and genre strings are shared through {@link StringPool}, and no
+ * parser objects are kept after construction.
+ *
+ * Every song gets a numeric id that is unique for the lifetime of the program, so songs
+ * with the same title can be told apart and looked up in constant time.
  *
  * @version 28 November 2024
  */
 public class Song {
 
     /**
-     * Stores metadata of the song (title, artist, length, genre, and file path).
+     * The id of the next song created.
+     */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /**
+     * The unique id of the song.
+     */
+    private final int myId = NEXT_ID.getAndIncrement();
+
+    /**
+     * The file path of the song.
+     */
+    private final String myFilePath;
+
+    /**
+     * The title, artist, and genre of the song. Artist and genre are pooled.
      */
-    private HashMap<String, String> mySongData = new HashMap<>();
+    private String myTitle, myArtist, myGenre;
 
     /**
-     * Object for accessing MP3 file information using the mp3agic library.
+     * Number of MPEG audio frames, valid once the length is known.
      */
-    private Mp3File myMp3File;
+    private int myFrameCount;
 
     /**
-     * Frame rate per millisecond, calculated from the MP3 file data.
+     * Length of the song in milliseconds, or -1 until it has been read. Written after the
+     * frame count, so reading it first makes the frame count visible to other threads.
      */
-    private double myFrameRatePerMilliseconds;
+    private volatile long myLengthInMilliseconds = -1;
 
     /**
-     * Constructs a Song object and extracts metadata from the given MP3 file path.
+     * Byte offsets of every few frames, or null until the song is first played or the
+     * index is restored from the metadata cache.
+     */
+    private volatile SeekIndex mySeekIndex;
+
+    /**
+     * Constructs a Song object and extracts the tags from the given MP3 file path.
+     * The frame count and length are read the first time they are needed. Songs are
+     * parsed on background threads, so a file that cannot be read is only logged, and
+     * the song's title is left null.
      *
      * @param theFilePath the file path of the MP3 file.
      */
     public Song(String theFilePath) {
-        // Initialize keys for metadata.
-        String songTitleKey = "songTitle";
-        String songArtistKey = "songArtist";
-        String songLengthKey = "songLength";
-        String songGenreKey = "songGenre";
-
-        // Store the file path in the song data map.
-        mySongData.put("filePath", theFilePath);
+        myFilePath = theFilePath;
 
         try {
-            // Create an Mp3File object from the file path.
-            myMp3File = new Mp3File(theFilePath);
-
-            // Calculate the frame rate per millisecond.
-            myFrameRatePerMilliseconds =
-                    (double) myMp3File.getFrameCount() / myMp3File.getLengthInMilliseconds();
-
-            // Convert the song length to a formatted string and store it.
-            mySongData.put(songLengthKey, convertToSongLengthFormat());
+            // Read the tags from the head of the file.
+            Mp3HeaderReader.Tags tags = Mp3HeaderReader.readTags(new File(theFilePath));
+            setTags(tags.getTitle(), tags.getArtist(), tags.getGenre());
+            return;
+        } catch (Exception e) {
+            // Fall back to jaudiotagger for files the header reader cannot handle.
+        }
 
+        try {
             // Use jaudiotagger to read metadata from the MP3 file.
             AudioFile audioFile = AudioFileIO.read(new File(theFilePath));
             Tag tag = audioFile.getTag();
 
             if (tag != null) {
                 // Store song title, artist, and genre from metadata.
-                mySongData.put(songTitleKey, tag.getFirst(FieldKey.TITLE));
-                mySongData.put(songArtistKey, tag.getFirst(FieldKey.ARTIST));
-                mySongData.put(songGenreKey, tag.getFirst(FieldKey.GENRE));
-
-                // Debug statement to print the genre
-//                System.out.println("DEBUG: Genre for song '" + tag.getFirst(FieldKey.TITLE) + "' is: " + tag.getFirst(FieldKey.GENRE));
+                setTags(tag.getFirst(FieldKey.TITLE), tag.getFirst(FieldKey.ARTIST), tag.getFirst(FieldKey.GENRE));
             } else {
                 // Default values if metadata is not found.
-                mySongData.put(songTitleKey, "N/A");
-                mySongData.put(songArtistKey, "N/A");
-                mySongData.put(songGenreKey, "N/A");
+                setTags("N/A", "N/A", "N/A");
 
                 // Log missing genre info
                 System.out.println("DEBUG: No metadata found for file: " + theFilePath);
             }
         } catch (Exception e) {
-            System.out.println("ERROR: Input Files Not found");
-            JOptionPane.showMessageDialog(null, "Error loading song data: " + e.getMessage(),"Error" ,JOptionPane.ERROR_MESSAGE);
+            System.out.println("ERROR: Could not load song data from " + theFilePath + ": " + e.getMessage());
         }
     }
 
     /**
-     * Converts the song length to a formatted string (mm:ss).
+     * Constructs a Song object from previously extracted metadata without reading the MP3 file.
      *
-     * @return the formatted song length as a string.
+     * @param theFilePath the file path of the MP3 file.
+     * @param theTitle the song title.
+     * @param theArtist the song artist.
+     * @param theGenre the song genre.
+     * @param theFrameCount the number of MPEG audio frames in the song, or -1 if unknown.
+     * @param theLengthInMilliseconds the song length in milliseconds, or -1 if unknown.
      */
-    private String convertToSongLengthFormat() {
-        long minutes = myMp3File.getLengthInSeconds() / 60;
-        long seconds = myMp3File.getLengthInSeconds() % 60;
-        return String.format("%02d:%02d", minutes, seconds);
+    public Song(String theFilePath, String theTitle, String theArtist, String theGenre,
+                int theFrameCount, long theLengthInMilliseconds) {
+        myFilePath = theFilePath;
+        setTags(theTitle, theArtist, theGenre);
+
+        if (theFrameCount >= 0 && theLengthInMilliseconds >= 0) {
+            myFrameCount = theFrameCount;
+            myLengthInMilliseconds = theLengthInMilliseconds;
+        }
+    }
+
+    private void setTags(String theTitle, String theArtist, String theGenre) {
+        myTitle = theTitle;
+        myArtist = StringPool.intern(theArtist);
+        myGenre = StringPool.intern(theGenre);
+    }
+
+    /**
+     * Returns the length of the song, reading the timing from the file on first call.
+     * Safe to call from any thread; the file is read at most once.
+     *
+     * @return the length in milliseconds.
+     */
+    private long loadTiming() {
+        long myResult = myLengthInMilliseconds;
+        if (myResult < 0) {
+            synchronized (this) {
+                myResult = myLengthInMilliseconds;
+                if (myResult < 0) {
+                    myResult = readTiming();
+                }
+            }
+        }
+        return myResult;
+    }
+
+    /**
+     * Reads the frame count and length from the file, falling back to mp3agic. The
+     * Mp3File is only used here and not kept.
+     *
+     * @return the length in milliseconds, zero if the file cannot be read.
+     */
+    private long readTiming() {
+        int frameCount = 0;
+        long length = 0;
+        try {
+            Mp3HeaderReader.Timing timing = Mp3HeaderReader.readTiming(new File(myFilePath));
+            frameCount = timing.getFrameCount();
+            length = timing.getLengthInMilliseconds();
+        } catch (Exception e) {
+            // Fall back to mp3agic for files the header reader cannot handle.
+            try {
+                Mp3File mp3File = new Mp3File(myFilePath);
+                frameCount = mp3File.getFrameCount();
+                length = mp3File.getLengthInMilliseconds();
+            } catch (Exception ex) {
+                System.out.println("ERROR: Could not read " + myFilePath + ": " + ex.getMessage());
+            }
+        }
+
+        myFrameCount = frameCount;
+        myLengthInMilliseconds = length;
+        return length;
+    }
+
+    /**
+     * Checks whether the frame count and length have been computed yet.
+     *
+     * @return true if the timing is known without reading the file.
+     */
+    public boolean isTimingLoaded() {
+        return myLengthInMilliseconds >= 0;
     }
 
     /**
@@ -112,7 +202,7 @@ public class Song {
      * @return the song title.
      */
     public String getSongTitle() {
-        return mySongData.get("songTitle");
+        return myTitle;
     }
 
     /**
@@ -121,7 +211,7 @@ public class Song {
      * @return the song artist.
      */
     public String getSongArtist() {
-        return mySongData.get("songArtist");
+        return myArtist;
     }
 
     /**
@@ -130,7 +220,10 @@ public class Song {
      * @return the song length.
      */
     public String getSongLength() {
-        return mySongData.get("songLength");
+        long lengthInSeconds = (loadTiming() + 500) / 1000;
+        long minutes = lengthInSeconds / 60;
+        long seconds = lengthInSeconds % 60;
+        return String.format("%02d:%02d", minutes, seconds);
     }
 
     /**
@@ -139,7 +232,7 @@ public class Song {
      * @return the song genre.
      */
     public String getSongGenre() {
-        return mySongData.get("songGenre");
+        return myGenre;
     }
 
     /**
@@ -148,16 +241,78 @@ public class Song {
      * @return the file path of the song.
      */
     public String getFilePath() {
-        return mySongData.get("filePath");
+        return myFilePath;
+    }
+
+    /**
+     * Retrieves the unique id of the song.
+     *
+     * @return the id, assigned in creation order starting at zero.
+     */
+    public int getId() {
+        return myId;
     }
 
     /**
-     * Retrieves the Mp3File object for the song.
+     * Retrieves the number of MPEG audio frames in the song.
      *
-     * @return the Mp3File object.
+     * @return the frame count.
      */
-    public Mp3File getMp3File() {
-        return myMp3File;
+    public int getFrameCount() {
+        loadTiming();
+        return myFrameCount;
+    }
+
+    /**
+     * Retrieves the length of the song in milliseconds.
+     *
+     * @return the song length in milliseconds.
+     */
+    public long getLengthInMilliseconds() {
+        return loadTiming();
+    }
+
+    /**
+     * Retrieves the seek index of the song if it has been built.
+     *
+     * @return the index, or null if it has not been built yet.
+     */
+    public SeekIndex getSeekIndex() {
+        return mySeekIndex;
+    }
+
+    /**
+     * Sets the seek index of the song, e.g. one restored from the metadata cache.
+     *
+     * @param theSeekIndex the index.
+     */
+    public void setSeekIndex(SeekIndex theSeekIndex) {
+        mySeekIndex = theSeekIndex;
+    }
+
+    /**
+     * Returns the seek index of the song, building it from the file on first call. This
+     * reads the whole file, so it should not be called on the Event Dispatch Thread.
+     *
+     * @return the index, or null if the file cannot be read.
+     */
+    public SeekIndex loadSeekIndex() {
+        SeekIndex myResult = mySeekIndex;
+        if (myResult == null) {
+            synchronized (this) {
+                myResult = mySeekIndex;
+                if (myResult == null) {
+                    try {
+                        myResult = Mp3HeaderReader.readSeekIndex(new File(myFilePath), SeekIndex.DEFAULT_INTERVAL);
+                        mySeekIndex = myResult;
+                    } catch (Exception | InternalError e) {
+                        // InternalError: the mapped file was truncated while it was read.
+                        System.out.println("ERROR: Could not index " + myFilePath + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return myResult;
     }
 
     /**
@@ -166,7 +321,8 @@ public class Song {
      * @return the frame rate per millisecond.
      */
     public double getFrameRatePerMilliseconds() {
-        return myFrameRatePerMilliseconds;
+        long length = loadTiming();
+        return length > 0 ? (double) myFrameCount / length : 0;
     }
 
     @Override
@@ -0,0 +1,173 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        SongRegistry.java
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide registry of Song objects keyed by canonical file path, so the library,
+ * playlists and the player share one Song per file instead of each parsing it again.
+ * Songs are held through weak references: a song stays registered while the library or
+ * an open playlist uses it, and is dropped once nothing refers to it any more.
+ *
+ * The registry does not check whether a file changed since it was parsed; the library
+ * registers freshly parsed songs with {@link #put(Song)} whenever it sees a file change.
+ * All methods are thread-safe.
+ *
+ * @version 28 November 2024
+ */
+public final class SongRegistry {
+
+    /**
+     * Weak reference to a song that remembers its key, so cleared entries can be removed.
+     */
+    private static final class SongReference extends WeakReference<Song> {
+        private final String myKey;
+
+        private SongReference(String theKey, Song theSong, ReferenceQueue<Song> theQueue) {
+            super(theSong, theQueue);
+            myKey = theKey;
+        }
+    }
+
+    /**
+     * Registered songs by canonical path.
+     */
+    private static final Map<String, SongReference> SONGS = new HashMap<>();
+
+    /**
+     * Receives the references of songs that were garbage collected.
+     */
+    private static final ReferenceQueue<Song> CLEARED = new ReferenceQueue<>();
+
+    /**
+     * Number of files parsed by {@link #get(String)} because no song was registered.
+     */
+    private static final AtomicInteger PARSE_COUNT = new AtomicInteger();
+
+    private SongRegistry() {
+    }
+
+    /**
+     * Returns the registered song for a file, parsing and registering the file only if no
+     * song is registered for it.
+     *
+     * @param theFilePath the path of the MP3 file.
+     * @return the shared song for the file.
+     */
+    public static Song get(String theFilePath) {
+        String myKey = keyOf(theFilePath);
+        Song mySong = lookUp(myKey);
+        if (mySong != null) {
+            return mySong;
+        }
+
+        // Parse outside the lock so other lookups are not held up by file reads. If another
+        // thread registered the file meanwhile, its song wins.
+        mySong = new Song(theFilePath);
+        PARSE_COUNT.incrementAndGet();
+        return putIfAbsent(mySong);
+    }
+
+    /**
+     * Returns the registered song for a file without parsing it.
+     *
+     * @param theFilePath the path of the MP3 file.
+     * @return the shared song for the file, or null if none is registered.
+     */
+    public static Song find(String theFilePath) {
+        return lookUp(keyOf(theFilePath));
+    }
+
+    /**
+     * Registers a song unless a song is already registered for the same file, e.g. a song
+     * built from a playlist's saved metadata, which must not replace one parsed from the file.
+     *
+     * @param theSong the song to register.
+     * @return the song registered for the file: the existing one, or theSong.
+     */
+    public static Song putIfAbsent(Song theSong) {
+        String myKey = keyOf(theSong.getFilePath());
+        synchronized (SONGS) {
+            Song myRegistered = lookUp(myKey);
+            if (myRegistered != null) {
+                return myRegistered;
+            }
+            SONGS.put(myKey, new SongReference(myKey, theSong, CLEARED));
+        }
+        return theSong;
+    }
+
+    /**
+     * Registers a freshly parsed song, replacing any song registered for the same file.
+     *
+     * @param theSong the song to register.
+     * @return the song.
+     */
+    public static Song put(Song theSong) {
+        String myKey = keyOf(theSong.getFilePath());
+        synchronized (SONGS) {
+            purge();
+            SONGS.put(myKey, new SongReference(myKey, theSong, CLEARED));
+        }
+        return theSong;
+    }
+
+    /**
+     * Returns the number of files parsed because they were not registered yet.
+     *
+     * @return the number of parses since the program started.
+     */
+    public static int getParseCount() {
+        return PARSE_COUNT.get();
+    }
+
+    /**
+     * Returns the registered song for a key, or null.
+     */
+    private static Song lookUp(String theKey) {
+        synchronized (SONGS) {
+            purge();
+            SongReference myReference = SONGS.get(theKey);
+            return myReference == null ? null : myReference.get();
+        }
+    }
+
+    /**
+     * Removes the entries of collected songs. Must be called while holding the lock.
+     */
+    private static void purge() {
+        SongReference myReference;
+        while ((myReference = (SongReference) CLEARED.poll()) != null) {
+            // The entry may already have been replaced by a newer song.
+            if (SONGS.get(myReference.myKey) == myReference) {
+                SONGS.remove(myReference.myKey);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical path of a file, or its absolute path if it cannot be resolved.
+     */
+    private static String keyOf(String theFilePath) {
+        File myFile = new File(theFilePath);
+        try {
+            return myFile.getCanonicalPath();
+        } catch (IOException e) {
+            return myFile.getAbsolutePath();
+        }
+    }
+}
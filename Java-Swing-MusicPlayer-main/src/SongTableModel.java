@@ -0,0 +1,137 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        SongTableModel.java
+ */
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only table model that shows a list of songs: the library, search results or a
+ * playlist. The model keeps a reference to the list instead of copying it, and cells are
+ * read from the songs only when the table paints them, so showing, sorting or searching
+ * a large library only touches the visible rows.
+ *
+ * Whoever changes the list must tell the model with one of the fire or songs methods.
+ * Must only be used on the Event Dispatch Thread.
+ *
+ * @version 28 November 2024
+ */
+public class SongTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMN_NAMES = {"", "Title", "Artist", "Genre"};
+
+    /**
+     * The songs shown, in row order.
+     */
+    private List<Song> mySongs = new ArrayList<>();
+
+    /**
+     * Shows a different list of songs.
+     *
+     * @param theSongs the songs to show; the list is referenced, not copied.
+     */
+    public void setSongs(List<Song> theSongs) {
+        mySongs = theSongs;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Returns the list of songs shown.
+     *
+     * @return the songs, in row order.
+     */
+    public List<Song> getSongs() {
+        return mySongs;
+    }
+
+    /**
+     * Returns the song shown in a row.
+     *
+     * @param theRow the row index.
+     * @return the song in that row.
+     */
+    public Song getSong(int theRow) {
+        return mySongs.get(theRow);
+    }
+
+    /**
+     * Reports rows removed from the list.
+     *
+     * @param theIndices the indices the rows had before they were removed, ascending.
+     */
+    public void songsRemoved(int[] theIndices) {
+        // Fire one event per run of adjacent rows, last run first so indices stay valid.
+        int myEnd = theIndices.length - 1;
+        while (myEnd >= 0) {
+            int myStart = myEnd;
+            while (myStart > 0 && theIndices[myStart - 1] == theIndices[myStart] - 1) {
+                myStart--;
+            }
+            fireTableRowsDeleted(theIndices[myStart], theIndices[myEnd]);
+            myEnd = myStart - 1;
+        }
+        // The row numbers below the first removed row have changed.
+        if (theIndices.length > 0 && theIndices[0] < mySongs.size()) {
+            fireTableRowsUpdated(theIndices[0], mySongs.size() - 1);
+        }
+    }
+
+    /**
+     * Reports rows whose song was replaced.
+     *
+     * @param theIndices the indices of the replaced rows, ascending.
+     */
+    public void songsUpdated(int[] theIndices) {
+        for (int myIndex : theIndices) {
+            fireTableRowsUpdated(myIndex, myIndex);
+        }
+    }
+
+    /**
+     * Reports rows appended to the list.
+     *
+     * @param theFirstIndex the index of the first new row.
+     * @param theLastIndex the index of the last new row.
+     */
+    public void songsAdded(int theFirstIndex, int theLastIndex) {
+        fireTableRowsInserted(theFirstIndex, theLastIndex);
+    }
+
+    @Override
+    public int getRowCount() {
+        return mySongs.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int theColumn) {
+        return COLUMN_NAMES[theColumn];
+    }
+
+    @Override
+    public Object getValueAt(int theRow, int theColumn) {
+        Song mySong = mySongs.get(theRow);
+        switch (theColumn) {
+            case 0:
+                return theRow + 1 + "";
+            case 1:
+                return mySong.getSongTitle();
+            case 2:
+                return mySong.getSongArtist();
+            default:
+                return mySong.getSongGenre();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *  Course: TCSS143 - Fundamentals of Object-Oriented Programming-Theory
+ *                    and Application
+ *  Names:            Colby Jenkins, Keith Smith, Kevin Michalson, Marcus Meligro
+ *  Instructor:       Wei Cai
+ *  Assignment:       Team Project
+ *  Due Date:         12/5/24
+ *
+ *  File Name:        StringPool.java
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates strings that repeat across many songs, such as artist and genre names,
+ * so that a library holds one copy of each distinct value.
+ *
+ * @version 28 November 2024
+ */
+public final class StringPool {
+
+    /**
+     * The canonical instance of every pooled string.
+     */
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * Returns the canonical instance of the given string.
+     *
+     * @param theValue the string to pool, may be null.
+     * @return an equal pooled string, or null if theValue is null.
+     */
+    public static String intern(String theValue) {
+        if (theValue == null) {
+            return null;
+        }
+        String myPooled = POOL.putIfAbsent(theValue, theValue);
+        return myPooled != null ? myPooled : theValue;
+    }
+}